@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+//  Runs many simulations in one JVM, one per input file and value of a swept parameter
+//  Each input file is parsed once, and every run works on its own fork of the parsed Scheduler,
+//  so runs share nothing but read-only process columns and can use every core of a work-stealing pool
+class BatchRunner {
+
+    //  Static Summary Filename
+    static String summaryFilename = "batch.csv";
+
+    //  Parameters that can be swept
+    static final List<String> PARAMETERS = Arrays.asList("quantum", "runfor", "use", "trace", "cpus");
+    //  Most values a sweep can expand to, each one is a run and a trace per input
+    static final int MAX_VALUES = 100000;
+
+    //  One simulation and its results
+    static class Run {
+
+        String input;
+        String value;
+        String output;
+        String use;
+        Integer quantum;
+        Long runfor;
+        RunSummary summary;
+    }
+
+    String parameter;
+    List<String> values;
+    Run[] runs;
+
+    /**
+     * Creates a batch
+     * @param inputs
+     *      Input files
+     * @param parameter
+     *      Parameter to sweep, or null to run each input as it is
+     * @param values
+     *      Values of the swept parameter, ignored without a parameter
+     */
+    public BatchRunner(List<String> inputs, String parameter, List<String> values)
+    {
+        this.parameter = parameter;
+        this.values = parameter != null ? values : Collections.singletonList((String) null);
+        this.runs = new Run[inputs.size() * this.values.size()];
+        for (int i = 0; i < this.runs.length; i++)
+        {
+            Run run = new Run();
+            run.input = inputs.get(i / this.values.size());
+            run.value = this.values.get(i % this.values.size());
+            this.runs[i] = run;
+        }
+    }
+
+    /**
+     * Runs the whole batch and writes one summary line per run
+     * @param inputs
+     *      Input files, directories (every "*.in" file in them) or glob patterns
+     * @param parameter
+     *      Parameter to sweep, or null to run each input as it is
+     * @param values
+     *      Values of the swept parameter, see values(String)
+     * @throws IOException
+     *      Exception if an input directory cannot be listed or the summary cannot be written
+     */
+    public static void run(List<String> inputs, String parameter, String values) throws IOException
+    {
+        if (parameter != null && !PARAMETERS.contains(parameter))
+        {
+            System.out.println("Error: Unknown sweep parameter " + parameter);
+            return;
+        }
+
+        List<String> files = expand(inputs);
+        if (files.isEmpty())
+        {
+            System.out.println("Error: No input files found.");
+            return;
+        }
+
+        BatchRunner batch = new BatchRunner(files, parameter, parameter != null ? values(values) : null);
+        batch.simulate(new ForkJoinPool());
+        batch.writeSummary(summaryFilename);
+    }
+
+    //  Parses every input and simulates every run, returning when all are done
+    public void simulate(ForkJoinPool pool)
+    {
+        List<InputTask> tasks = new ArrayList<>();
+        for (int i = 0; i < this.runs.length; i += this.values.size())
+        {
+            tasks.add(new InputTask(i));
+        }
+        try
+        {
+            for (InputTask task : tasks)
+            {
+                pool.execute(task);
+            }
+            for (InputTask task : tasks)
+            {
+                task.join();
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    //  Parses one input file, then fans its runs out to the pool
+    class InputTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        int first;
+
+        public InputTask(int first)
+        {
+            this.first = first;
+        }
+
+        @Override
+        protected void compute()
+        {
+            String input = runs[this.first].input;
+            Scheduler parsed;
+            try
+            {
+                //  Validation waits until the swept value is applied
+                InputParser parser = new InputParser(new Scheduler());
+                parser.read(input);
+                parsed = parser.scheduler;
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error: " + input + " could not be read.");
+                return;
+            }
+            catch (NumberFormatException | IndexOutOfBoundsException e)
+            {
+                System.out.println("Error: Formatting error in " + input);
+                return;
+            }
+
+            RunTask[] tasks = new RunTask[values.size()];
+            for (int i = 0; i < tasks.length; i++)
+            {
+                tasks[i] = new RunTask(runs[this.first + i], parsed);
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    //  Simulates one run on a private copy of the parsed input
+    class RunTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        Run run;
+        Scheduler parsed;
+
+        public RunTask(Run run, Scheduler parsed)
+        {
+            this.run = run;
+            this.parsed = parsed;
+        }
+
+        @Override
+        protected void compute()
+        {
+            Run run = this.run;
+            Scheduler scheduler = this.parsed.fork();
+            if (parameter != null)
+            {
+                try
+                {
+                    apply(scheduler, parameter, run.value);
+                }
+                catch (NumberFormatException e)
+                {
+                    System.out.println("Error: Invalid \"" + parameter + "\" value " + run.value);
+                    return;
+                }
+            }
+            scheduler = Schedule.validateInput(scheduler);
+            if (scheduler.use.equals("all"))
+            {
+                System.out.println("Error: \"use all\" cannot be batched, sweep \"use\" instead.");
+                return;
+            }
+            if (!scheduler.useref.containsKey(scheduler.use))
+            {
+                System.out.println("\t" + run.input + (parameter != null ? " (" + parameter + " " + run.value + ")" : ""));
+                return;
+            }
+
+            boolean binary = scheduler.trace.equals("binary");
+            run.output = outputFilename(run.input, parameter, run.value, binary);
+            try (TraceSink out = binary ? new BinaryTraceWriter(run.output) : new TraceWriter(run.output))
+            {
+                out.writeHeader(scheduler);
+                Schedule.simulate(scheduler, out);
+                out.writeFooter(scheduler);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error: Unable to create " + run.output);
+                System.out.println(e);
+                return;
+            }
+            run.use = scheduler.use;
+            run.quantum = scheduler.quantum;
+            run.runfor = scheduler.runfor;
+            run.summary = RunSummary.of(scheduler);
+        }
+    }
+
+    /**
+     * Writes one CSV line per completed run, in input and sweep order
+     * @param filename
+     *      Path of the summary file
+     * @throws IOException
+     *      Exception if the summary file cannot be written
+     */
+    public void writeSummary(String filename) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(filename))))
+        {
+            writer.println("input,output,use,quantum,runfor,processes,finished,average wait,average turnaround,makespan");
+            for (Run run : this.runs)
+            {
+                if (run.summary == null)
+                {
+                    continue;
+                }
+                RunSummary summary = run.summary;
+                writer.println(String.format(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%d,%.3f,%.3f,%d",
+                    run.input, run.output, run.use, run.quantum != null ? run.quantum : "",
+                    run.runfor, summary.processes, summary.finished,
+                    summary.averageWait(), summary.averageTurnaround(), summary.makespan));
+            }
+        }
+    }
+
+    //  Sets a swept parameter on a Scheduler
+    static void apply(Scheduler scheduler, String parameter, String value)
+    {
+        switch (parameter)
+        {
+            case "quantum":
+                scheduler.quantum = Integer.valueOf(value);
+                break;
+            case "runfor":
+                scheduler.runfor = Long.valueOf(value);
+                break;
+            case "use":
+                scheduler.use = value;
+                scheduler.usename = scheduler.useref.get(value);
+                break;
+            case "trace":
+                scheduler.trace = value;
+                break;
+            case "cpus":
+                scheduler.cpus = Integer.valueOf(value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Expands a sweep specification into its values
+     * @param spec
+     *      Comma-separated values, each either a single value or an inclusive integer range such as "1..64"
+     * @return
+     *      Values in the given order
+     * @throws NumberFormatException
+     *      Exception if a range bound is not a number
+     * @throws IllegalArgumentException
+     *      Exception if the values are more than MAX_VALUES
+     */
+    public static List<String> values(String spec) throws IllegalArgumentException
+    {
+        List<String> values = new ArrayList<>();
+        for (String part : spec.split(","))
+        {
+            part = part.trim();
+            int range = part.indexOf("..");
+            if (range < 0)
+            {
+                if (values.size() == MAX_VALUES)
+                {
+                    throw new IllegalArgumentException("A sweep can have at most " + MAX_VALUES + " values");
+                }
+                values.add(part);
+                continue;
+            }
+            long from = Long.parseLong(part.substring(0, range).trim());
+            long to = Long.parseLong(part.substring(range + 2).trim());
+            if (to < from)
+            {
+                continue;
+            }
+            //  Compared unsigned, as the width of a range can exceed Long.MAX_VALUE
+            if (Long.compareUnsigned(to - from, MAX_VALUES - values.size()) >= 0)
+            {
+                throw new IllegalArgumentException("A sweep can have at most " + MAX_VALUES + " values");
+            }
+            //  Stops on the last value rather than past it, which would overflow at Long.MAX_VALUE
+            for (long value = from; ; value++)
+            {
+                values.add(Long.toString(value));
+                if (value == to)
+                {
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    //  Resolves input arguments into a sorted list of input files per argument, each file listed once
+    //  A glob leaves out the traces an earlier batch wrote next to its inputs
+    static List<String> expand(List<String> inputs) throws IOException
+    {
+        //  Keyed by normalized path, so "runs/a.in" and "./runs/a.in" are one input
+        Map<Path, String> files = new LinkedHashMap<>();
+        for (String input : inputs)
+        {
+            Path path = Paths.get(input);
+            String glob = null;
+            if (Files.isDirectory(path))
+            {
+                glob = "*.in";
+            }
+            else if (input.contains("*") || input.contains("?") || input.contains("["))
+            {
+                glob = path.getFileName().toString();
+                path = path.getParent() != null ? path.getParent() : Paths.get(".");
+            }
+            else
+            {
+                files.putIfAbsent(path.toAbsolutePath().normalize(), input);
+                continue;
+            }
+
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            List<String> matches = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path))
+            {
+                for (Path entry : entries)
+                {
+                    String name = entry.getFileName().toString();
+                    if (matcher.matches(entry.getFileName()) && Files.isRegularFile(entry)
+                        && !name.endsWith(".out") && !name.endsWith(".bin"))
+                    {
+                        matches.add(entry.toString());
+                    }
+                }
+            }
+            Collections.sort(matches);
+            for (String match : matches)
+            {
+                files.putIfAbsent(Paths.get(match).toAbsolutePath().normalize(), match);
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    //  Names a run's trace after its input, "runs/a.in" swept over quantum 4 gives "runs/a.quantum-4.out"
+    static String outputFilename(String input, String parameter, String value, boolean binary)
+    {
+        String base = input.endsWith(".in") ? input.substring(0, input.length() - 3) : input;
+        if (parameter != null)
+        {
+            base += "." + parameter + "-" + value;
+        }
+        return base + (binary ? ".bin" : ".out");
+    }
+}
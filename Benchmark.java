@@ -0,0 +1,626 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+
+/*
+ *  Timing harness for the simulator's hot paths
+ *
+ *  To run:
+ *  [1] Enter "javac Benchmark.java"
+ *  [2] Enter "java Benchmark [parse|engine|write|all] [processes,...] [runfor] [--forks N] [--iterations N]
+ *             [--save file] [--baseline file]"
+ *
+ *  Each benchmark runs in JVMs of its own, forked with the same classpath and options (2 unless given),
+ *  so the JIT profile of one benchmark never shapes another. In each fork the benchmark is warmed up,
+ *  then timed over several iterations of a fixed length (5 unless given). Results are the mean time per
+ *  operation over the iterations of every fork with the half-width of its 99% confidence interval,
+ *  throughput, bytes allocated by the benchmark thread, and garbage collections. "--forks 0" runs every
+ *  benchmark in this JVM instead. "--save" writes the results as CSV, and "--baseline" prints the change
+ *  against a saved run, marking the changes that are within the error of the two runs.
+ *
+ *  The same workloads run under JMH from the jmh source set of build.gradle, see task(String, Long).
+ *
+ */
+
+public class Benchmark {
+
+    static final long WARMUP = 3_000_000_000L;
+    static final long ITERATION = 500_000_000L;
+    static final int MIN_OPERATIONS = 3;
+    //  Prefix of the lines a fork reports an iteration on
+    static final String ITERATION_LINE = "#iteration ";
+
+    static int forks = 2;
+    static int iterations = 5;
+
+    //  Averages of one measured benchmark
+    static class Result {
+
+        String name;
+        long operations;
+        double millis;
+        //  Half-width of the 99% confidence interval of millis
+        double error;
+        double megabytes;
+        long collections;
+        long collectionMillis;
+        //  Processes handled per operation, for throughput
+        long processes;
+    }
+
+    static List<Result> results = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException
+    {
+        List<String> positional = new ArrayList<>();
+        String save = null;
+        String baseline = null;
+        String child = null;
+        Long runfor = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--save") && i + 1 < args.length)
+            {
+                save = args[++i];
+            }
+            else if (args[i].equals("--baseline") && i + 1 < args.length)
+            {
+                baseline = args[++i];
+            }
+            else if (args[i].equals("--forks") && i + 1 < args.length)
+            {
+                forks = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--iterations") && i + 1 < args.length)
+            {
+                iterations = Math.max(Integer.parseInt(args[++i]), 1);
+            }
+            //  A fork runs one benchmark and reports its iterations on standard output
+            else if (args[i].equals("--child") && i + 1 < args.length)
+            {
+                child = args[++i];
+            }
+            else if (args[i].equals("--runfor") && i + 1 < args.length)
+            {
+                runfor = Long.valueOf(args[++i]);
+            }
+            else
+            {
+                positional.add(args[i]);
+            }
+        }
+
+        if (child != null)
+        {
+            for (double[] iteration : measure(task(child, runfor)))
+            {
+                System.out.println(String.format(Locale.ROOT, ITERATION_LINE + "%.6f %.6f %d %d %d", iteration[0],
+                    iteration[1], (long) iteration[2], (long) iteration[3], (long) iteration[4]));
+            }
+            return;
+        }
+
+        String mode = positional.size() > 0 ? positional.get(0) : "all";
+        int[] sizes = sizes(positional.size() > 1 ? positional.get(1) : "10,1000,100000,1000000");
+        runfor = positional.size() > 2 ? Long.valueOf(positional.get(2)) : null;
+        if (!mode.equals("all") && !mode.equals("parse") && !mode.equals("engine") && !mode.equals("write"))
+        {
+            System.out.println("Error: Unknown benchmark " + mode);
+            return;
+        }
+
+        for (int processes : sizes)
+        {
+            for (String group : new String[] { "parse", "engine", "write" })
+            {
+                if (!mode.equals("all") && !mode.equals(group))
+                {
+                    continue;
+                }
+                System.out.println(title(group, processes, runfor));
+                for (String name : names(group, processes))
+                {
+                    run(name, processes, runfor);
+                }
+            }
+        }
+
+        if (baseline != null)
+        {
+            compare(baseline);
+        }
+        if (save != null)
+        {
+            save(save);
+        }
+    }
+
+    //  Parses a comma-separated list of process counts
+    static int[] sizes(String list)
+    {
+        String[] part = list.split(",");
+        int[] sizes = new int[part.length];
+        for (int i = 0; i < part.length; i++)
+        {
+            sizes[i] = Integer.parseInt(part[i].trim());
+        }
+        return sizes;
+    }
+
+    //  Line printed ahead of the benchmarks of one group
+    static String title(String group, int processes, Long runfor)
+    {
+        switch (group)
+        {
+            case "parse":
+                return "Parsing " + processes + " processes";
+            case "engine":
+                return "Simulating " + processes + " processes for " + (runfor != null ? runfor : processes * 4L)
+                    + " time units";
+            default:
+                return "Writing traces of " + processes + " processes";
+        }
+    }
+
+    /**
+     * Lists the benchmarks of one group
+     * parse compares the line-based parser with the memory-mapped parser on one synthetic input file,
+     * engine simulates every policy on one in-memory workload without writing a trace, then the same runs
+     * with every time past 32 bits for the cost of the 64-bit path, and write simulates First-Come
+     * First-Served into the text and binary trace writers, then the binary one in 64-bit records
+     */
+    static List<String> names(String group, int processes)
+    {
+        List<String> names = new ArrayList<>();
+        switch (group)
+        {
+            case "parse":
+                names.add("parse/readInput+parseInput/" + processes);
+                names.add("parse/InputParser/" + processes);
+                break;
+            case "engine":
+                for (String use : new Scheduler().policyref.keySet())
+                {
+                    names.add("engine/" + use + "/" + processes);
+                }
+                for (String use : new Scheduler().policyref.keySet())
+                {
+                    names.add("engine-wide/" + use + "/" + processes);
+                }
+                break;
+            default:
+                names.add("write/text/" + processes);
+                names.add("write/binary/" + processes);
+                names.add("write-wide/binary/" + processes);
+                break;
+        }
+        return names;
+    }
+
+    /**
+     * Prepares the workload of one benchmark and returns the operation to time on it
+     * @param name
+     *      Benchmark name as listed by names, such as "engine/rr/1000"
+     * @param runfor
+     *      Length of the run, or null for four time units per process
+     * @return
+     *      Operation that runs the benchmark once, its result only there to be consumed
+     * @throws IOException
+     *      Exception if the input or output file of the benchmark cannot be created
+     */
+    public static Callable<Object> task(String name, Long runfor) throws IOException
+    {
+        String[] part = name.split("/");
+        if (part.length != 3)
+        {
+            throw new IllegalArgumentException("Unknown benchmark " + name);
+        }
+        String variant = part[1];
+        int processes = Integer.parseInt(part[2]);
+        switch (part[0])
+        {
+            case "parse":
+            {
+                File input = File.createTempFile("processes", ".in");
+                input.deleteOnExit();
+                writeWorkload(input, processes, 42);
+                if (variant.equals("InputParser"))
+                {
+                    return () -> InputParser.parse(input.getPath());
+                }
+                Schedule.inputFilename = input.getPath();
+                return () -> Schedule.parseInput(Schedule.readInput());
+            }
+            case "engine":
+            case "engine-wide":
+            {
+                Scheduler snapshot = workload(processes, runfor, 42);
+                if (part[0].equals("engine-wide"))
+                {
+                    wide(snapshot);
+                }
+                if (!snapshot.policyref.containsKey(variant))
+                {
+                    break;
+                }
+                snapshot.indexArrivals();
+                return () ->
+                {
+                    Scheduler scheduler = snapshot.fork();
+                    scheduler.use = variant;
+                    Schedule.simulate(scheduler, new NullTrace());
+                    return scheduler;
+                };
+            }
+            case "write":
+            case "write-wide":
+            {
+                Scheduler snapshot = workload(processes, runfor, 42);
+                if (part[0].equals("write-wide"))
+                {
+                    //  The binary trace in the 64-bit records of a run whose bursts need them
+                    snapshot.table.burst.widen();
+                }
+                snapshot.indexArrivals();
+                File output = File.createTempFile("processes", ".out");
+                output.deleteOnExit();
+                boolean binary = variant.equals("binary");
+                return () ->
+                {
+                    Scheduler scheduler = snapshot.fork();
+                    try (TraceSink out = binary ? new BinaryTraceWriter(output.getPath())
+                        : new TraceWriter(output.getPath()))
+                    {
+                        out.writeHeader(scheduler);
+                        Schedule.simulate(scheduler, out);
+                        out.writeFooter(scheduler);
+                    }
+                    return scheduler;
+                };
+            }
+            default:
+                break;
+        }
+        throw new IllegalArgumentException("Unknown benchmark " + name);
+    }
+
+    /**
+     * Builds an in-memory workload with the same distribution as writeWorkload
+     * @param processes
+     *      Number of processes
+     * @param runfor
+     *      Length of the run, or null for four time units per process
+     * @param seed
+     *      Random seed
+     * @return
+     *      Validated Scheduler using First-Come First-Served with a quantum of 4
+     */
+    static Scheduler workload(int processes, Long runfor, long seed)
+    {
+        Random random = new Random(seed);
+        Scheduler scheduler = new Scheduler();
+        scheduler.processcount = processes;
+        scheduler.runfor = runfor != null ? runfor : processes * 4L;
+        scheduler.use = "fcfs";
+        scheduler.usename = scheduler.useref.get(scheduler.use);
+        scheduler.quantum = 4;
+        for (int i = 0; i < processes; i++)
+        {
+            scheduler.addProcess("P" + i, random.nextInt(Math.max(processes * 4, 1)), 1 + random.nextInt(8));
+        }
+        return scheduler;
+    }
+
+    //  Moves a workload 2^32 time units later, so it plays out the same with times that need 64 bits
+    static Scheduler wide(Scheduler scheduler)
+    {
+        long shift = 1L << 32;
+        scheduler.runfor += shift;
+        ProcessTable table = scheduler.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            table.arrival.set(id, table.arrival.get(id) + shift);
+        }
+        return scheduler;
+    }
+
+    //  Writes a valid input file with uniformly spread arrivals and short bursts
+    static void writeWorkload(File file, int processes, long seed) throws IOException
+    {
+        Random random = new Random(seed);
+        try (Writer writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("processcount " + processes + "\n");
+            writer.write("runfor " + processes * 4 + "\n");
+            writer.write("use fcfs\n");
+            for (int i = 0; i < processes; i++)
+            {
+                writer.write("process name P" + i + " arrival " + random.nextInt(processes * 4)
+                    + " burst " + (1 + random.nextInt(8)) + "\n");
+            }
+            writer.write("end\n");
+        }
+    }
+
+    /**
+     * Measures one benchmark in its forks, or in this JVM without forks, and prints its result
+     * @param name
+     *      Benchmark name as listed by names
+     * @param processes
+     *      Processes handled by one run of the benchmark
+     * @param runfor
+     *      Length of the run, or null for four time units per process
+     * @throws IOException
+     *      Exception if a fork cannot be started or the benchmark cannot create its files
+     */
+    static void run(String name, long processes, Long runfor) throws IOException
+    {
+        List<double[]> measured = new ArrayList<>();
+        if (forks == 0)
+        {
+            measured.addAll(measure(task(name, runfor)));
+        }
+        for (int fork = 0; fork < forks; fork++)
+        {
+            measured.addAll(fork(name, runfor));
+        }
+
+        Result result = new Result();
+        result.name = name;
+        result.processes = processes;
+        double[] millis = new double[measured.size()];
+        for (int i = 0; i < millis.length; i++)
+        {
+            double[] iteration = measured.get(i);
+            millis[i] = iteration[0];
+            result.megabytes += iteration[1] / millis.length;
+            result.operations += (long) iteration[2];
+            result.collections += (long) iteration[3];
+            result.collectionMillis += (long) iteration[4];
+        }
+        result.millis = mean(millis);
+        result.error = error(millis);
+        results.add(result);
+
+        System.out.printf(Locale.ROOT,
+            "%-36s %12.4f +/- %10.4f ms/op %12.0f proc/s %10.2f MB/op %9.1f MB/s %5d gc %6d gc ms%n",
+            name, result.millis, result.error, processes / (result.millis / 1e3), result.megabytes,
+            result.megabytes / (result.millis / 1e3), result.collections, result.collectionMillis);
+    }
+
+    //  Runs one benchmark in a fresh JVM with the classpath and options of this one, returns its iterations
+    static List<double[]> fork(String name, Long runfor) throws IOException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmark.class.getName());
+        command.add("--child");
+        command.add(name);
+        command.add("--iterations");
+        command.add(Integer.toString(iterations));
+        if (runfor != null)
+        {
+            command.add("--runfor");
+            command.add(Long.toString(runfor));
+        }
+
+        java.lang.Process fork = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<double[]> measured = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fork.getInputStream(),
+            StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (!line.startsWith(ITERATION_LINE))
+                {
+                    System.out.println(line);
+                    continue;
+                }
+                String[] part = line.substring(ITERATION_LINE.length()).split(" ");
+                double[] iteration = new double[part.length];
+                for (int i = 0; i < part.length; i++)
+                {
+                    iteration[i] = Double.parseDouble(part[i]);
+                }
+                measured.add(iteration);
+            }
+        }
+        try
+        {
+            if (fork.waitFor() != 0 || measured.isEmpty())
+            {
+                throw new IllegalStateException("Benchmark " + name + " failed in its fork");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return measured;
+    }
+
+    /**
+     * Runs a task for a while to warm up, then times it over a number of iterations of a fixed length
+     * @param task
+     *      Work to measure
+     * @return
+     *      Time per operation in milliseconds, megabytes allocated per operation, operations, collections
+     *      and collection milliseconds of each iteration
+     */
+    static List<double[]> measure(Callable<Object> task)
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        List<double[]> measured = new ArrayList<>();
+        try
+        {
+            long start = System.nanoTime();
+            for (int i = 0; i < MIN_OPERATIONS || System.nanoTime() - start < WARMUP; i++)
+            {
+                task.call();
+            }
+
+            for (int iteration = 0; iteration < iterations; iteration++)
+            {
+                long collections = collections();
+                long collectionMillis = collectionMillis();
+                long allocated = threads.getThreadAllocatedBytes(thread);
+                long operations = 0;
+                start = System.nanoTime();
+                long elapsed;
+                do
+                {
+                    task.call();
+                    operations++;
+                    elapsed = System.nanoTime() - start;
+                }
+                while (elapsed < ITERATION);
+                allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+                measured.add(new double[] { elapsed / 1e6 / operations,
+                    allocated / (double) (1 << 20) / operations, operations, collections() - collections,
+                    collectionMillis() - collectionMillis });
+            }
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+        return measured;
+    }
+
+    static double mean(double[] values)
+    {
+        double sum = 0;
+        for (double value : values)
+        {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    //  Half-width of the 99% confidence interval of the mean, from Student's t distribution
+    static double error(double[] values)
+    {
+        int count = values.length;
+        if (count < 2)
+        {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values)
+        {
+            squares += (value - mean) * (value - mean);
+        }
+        return student(count - 1) * Math.sqrt(squares / (count - 1) / count);
+    }
+
+    //  Two-sided 99% quantile of Student's t distribution, the normal one past 30 degrees of freedom
+    static double student(int degrees)
+    {
+        double[] quantiles = { 63.657, 9.925, 5.841, 4.604, 4.032, 3.707, 3.499, 3.355, 3.250, 3.169,
+            3.106, 3.055, 3.012, 2.977, 2.947, 2.921, 2.898, 2.878, 2.861, 2.845,
+            2.831, 2.819, 2.807, 2.797, 2.787, 2.779, 2.771, 2.763, 2.756, 2.750 };
+        return degrees <= quantiles.length ? quantiles[degrees - 1] : 2.576;
+    }
+
+    static long collections()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    static long collectionMillis()
+    {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    //  Writes the results as CSV, to be passed back with "--baseline"
+    static void save(String filename) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(filename))))
+        {
+            writer.println("benchmark,ms/op,MB/op,operations,gc,error");
+            for (Result result : results)
+            {
+                writer.println(String.format(Locale.ROOT, "%s,%.6f,%.6f,%d,%d,%.6f", result.name, result.millis,
+                    result.megabytes, result.operations, result.collections, result.error));
+            }
+        }
+    }
+
+    //  Prints the change in time and allocation of every benchmark also found in a saved run,
+    //  marking time changes no larger than the errors of the two runs together
+    static void compare(String filename) throws IOException
+    {
+        Map<String, double[]> saved = new HashMap<>();
+        for (String line : Files.readAllLines(Paths.get(filename)))
+        {
+            String[] part = line.split(",");
+            if (part.length >= 3 && !part[0].equals("benchmark"))
+            {
+                //  Runs saved before errors were measured have none
+                saved.put(part[0], new double[] { Double.parseDouble(part[1]), Double.parseDouble(part[2]),
+                    part.length >= 6 ? Double.parseDouble(part[5]) : 0 });
+            }
+        }
+
+        System.out.println();
+        System.out.println("Change against " + filename);
+        Map<String, Result> current = new LinkedHashMap<>();
+        for (Result result : results)
+        {
+            current.put(result.name, result);
+        }
+        for (Result result : current.values())
+        {
+            double[] base = saved.get(result.name);
+            if (base == null)
+            {
+                continue;
+            }
+            boolean noise = Math.abs(result.millis - base[0]) <= result.error + base[2];
+            System.out.printf(Locale.ROOT, "%-36s %+8.1f%% time %+8.1f%% allocation%s%n", result.name,
+                change(base[0], result.millis), change(base[1], result.megabytes), noise ? "   within error" : "");
+        }
+    }
+
+    static double change(double before, double after)
+    {
+        return before > 0 ? (after - before) / before * 100 : 0;
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+//  Reads a binary trace through memory-mapped windows and replays it into another trace sink
+class BinaryTraceReader {
+    
+    //  Largest window mapped at once, a whole number of records of either width
+    static final long WINDOW = (1L << 30) - (1L << 30) % (3 * BinaryTraceWriter.RECORD);
+    
+    /**
+     * Renders a binary trace into the text output format
+     * @param binaryFilename
+     *      Path of the binary trace written by BinaryTraceWriter
+     * @param textFilename
+     *      Path of the text output to create
+     * @throws IOException
+     *      Exception if the binary trace cannot be read or the text output cannot be written
+     */
+    public static void render(String binaryFilename, String textFilename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(binaryFilename), StandardOpenOption.READ);
+             TraceWriter out = new TraceWriter(textFilename))
+        {
+            replay(channel, out);
+        }
+    }
+    
+    /**
+     * Replays a binary trace into a sink, header first, then every record, then the footer
+     * @param channel
+     *      Open channel on the binary trace
+     * @param out
+     *      Sink that receives the trace
+     * @throws IOException
+     *      Exception if the binary trace is malformed or cannot be read
+     */
+    public static void replay(FileChannel channel, TraceSink out) throws IOException
+    {
+        long size = channel.size();
+        if (size < 16)
+        {
+            throw new IOException("Not a binary trace");
+        }
+        ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - 16, 16);
+        long recordsOffset = trailer.getLong();
+        long records = trailer.getLong();
+        
+        //  Header rebuilds the scheduler properties and process names the text format needs
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, recordsOffset);
+        if (header.getInt() != BinaryTraceWriter.MAGIC)
+        {
+            throw new IOException("Not a binary trace");
+        }
+        int version = header.getInt();
+        if (version < 1 || version > BinaryTraceWriter.VERSION)
+        {
+            throw new IOException("Unsupported binary trace version " + version);
+        }
+        boolean wide = version >= 3;
+        long footerOffset = recordsOffset + records * (wide ? BinaryTraceWriter.WIDE_RECORD : BinaryTraceWriter.RECORD);
+        Scheduler scheduler = new Scheduler();
+        scheduler.processcount = header.getInt();
+        boolean hasQuantum = header.getInt() != 0;
+        int quantum = header.getInt();
+        scheduler.quantum = hasQuantum ? quantum : null;
+        scheduler.cpus = version >= 2 ? header.getInt() : 1;
+        scheduler.usename = getString(header);
+        int count = header.getInt();
+        for (int id = 0; id < count; id++)
+        {
+            scheduler.addProcess(getString(header), 0, 0);
+        }
+        out.writeHeader(scheduler);
+        
+        //  Records are mapped window by window so traces larger than 2 GB can be read
+        for (long offset = recordsOffset; offset < footerOffset; offset += WINDOW)
+        {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                offset, Math.min(WINDOW, footerOffset - offset));
+            while (window.hasRemaining())
+            {
+                long time = wide ? window.getLong() : window.getInt();
+                int type = window.getInt();
+                int process = window.getInt();
+                long burst = wide ? window.getLong() : window.getInt();
+                int cpu = type >>> BinaryTraceWriter.TYPE_BITS;
+                switch (type & ((1 << BinaryTraceWriter.TYPE_BITS) - 1))
+                {
+                    case BinaryTraceWriter.ARRIVED:
+                        out.arrived(time, process);
+                        break;
+                    case BinaryTraceWriter.SELECTED:
+                        out.selected(time, cpu, process, burst);
+                        break;
+                    case BinaryTraceWriter.FINISHED:
+                        out.finished(time, cpu, process);
+                        break;
+                    case BinaryTraceWriter.IDLE:
+                        out.idle(time, time + 1);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+        }
+        
+        MappedByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, size - 16 - footerOffset);
+        scheduler.end = wide ? footer.getLong() : footer.getInt();
+        ProcessTable table = scheduler.table;
+        for (int id = 0; id < count; id++)
+        {
+            table.wait.set(id, wide ? footer.getLong() : footer.getInt());
+            table.turnaround.set(id, wide ? footer.getLong() : footer.getInt());
+        }
+        if (version >= 2)
+        {
+            scheduler.busy = new long[scheduler.cpus];
+            scheduler.migrations = new int[scheduler.cpus];
+            for (int cpu = 0; cpu < scheduler.cpus; cpu++)
+            {
+                scheduler.busy[cpu] = footer.getLong();
+                scheduler.migrations[cpu] = footer.getInt();
+            }
+        }
+        out.writeFooter(scheduler);
+    }
+    
+    static String getString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
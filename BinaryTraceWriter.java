@@ -0,0 +1,284 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+//  Streams the simulation output to file as fixed-width binary records
+//
+//  Layout:
+//      header   magic "CPUT", version, processcount, quantum flag and value, processor count,
+//               algorithm name, then the name table (count, then length and UTF-8 bytes per name)
+//      records  16 bytes each: time, type with the processor in the bits above the low byte,
+//               process id (-1 when idle), burst (0 unless selected)
+//      footer   finishing time, wait and turnaround per process, then busy time (a long)
+//               and migrations per processor
+//      trailer  offset of the first record and number of records, as two longs
+//  Version 1 traces have no processor count, processor bits or per-processor footer
+//  Version 3 traces, written only for runs whose times or bursts can need 64 bits, hold time and
+//  burst as longs in 24-byte records, and the finishing time, waits and turnarounds as longs
+//  Every version ends with the trailer
+//  Strings are an int byte length followed by UTF-8 bytes, all numbers are big-endian
+class BinaryTraceWriter implements TraceSink {
+    
+    static final int MAGIC = 0x43505554;
+    static final int VERSION = 3;
+    static final int NARROW_VERSION = 2;
+    static final int RECORD = 16;
+    static final int WIDE_RECORD = 24;
+    
+    //  Record types
+    static final int ARRIVED = 0;
+    static final int SELECTED = 1;
+    static final int FINISHED = 2;
+    static final int IDLE = 3;
+    static final int TYPE_BITS = 8;
+    
+    FileChannel channel;
+    ByteBuffer buffer;
+    long position;
+    long recordsOffset;
+    long records;
+    //  Whether times and bursts are written as longs
+    boolean wide;
+    
+    /**
+     * Creates (or truncates) the binary trace file
+     * @param filename
+     *      Path of the binary trace file
+     * @throws IOException
+     *      Exception if the file cannot be created
+     */
+    public BinaryTraceWriter(String filename) throws IOException
+    {
+        this.channel = new FileOutputStream(filename).getChannel();
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.position = 0;
+        this.records = 0;
+    }
+    
+    /**
+     * Opens a binary trace file to continue it from a checkpoint
+     * @param filename
+     *      Path of the binary trace file
+     * @param offset
+     *      Length of the trace the checkpoint was taken at, anything after it is dropped
+     * @throws IOException
+     *      Exception if the file cannot be opened or is shorter than the offset
+     */
+    public BinaryTraceWriter(String filename, long offset) throws IOException
+    {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+        if (this.channel.size() < offset)
+        {
+            this.channel.close();
+            throw new IOException(filename + " is shorter than the checkpoint expects");
+        }
+        this.channel.truncate(offset);
+        this.channel.position(offset);
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.position = offset;
+        this.records = 0;
+    }
+    
+    //  The header is not written again, its length is worked out to count the records already in the file
+    @Override
+    public void resume(Scheduler scheduler)
+    {
+        //  Six header numbers, the algorithm name with its length, and the name count
+        long length = 6 * 4 + 4 + scheduler.usename.getBytes(StandardCharsets.UTF_8).length + 4;
+        ProcessTable table = scheduler.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            length += 4 + table.name[id].length;
+        }
+        this.wide = scheduler.isWide();
+        this.recordsOffset = length;
+        this.records = (this.position - length) / (this.wide ? WIDE_RECORD : RECORD);
+    }
+    
+    @Override
+    public long mark() throws IOException
+    {
+        flush();
+        this.channel.force(false);
+        return this.position;
+    }
+    
+    @Override
+    public long length()
+    {
+        return this.position;
+    }
+    
+    @Override
+    public void writeHeader(Scheduler scheduler) throws IOException
+    {
+        this.wide = scheduler.isWide();
+        putInt(MAGIC);
+        putInt(this.wide ? VERSION : NARROW_VERSION);
+        putInt(scheduler.processcount);
+        putInt(scheduler.quantum != null ? 1 : 0);
+        putInt(scheduler.quantum != null ? scheduler.quantum : 0);
+        putInt(scheduler.getCpus());
+        putString(scheduler.usename);
+        
+        ProcessTable table = scheduler.table;
+        putInt(table.size);
+        for (int id = 0; id < table.size; id++)
+        {
+            putBytes(table.name[id]);
+        }
+        this.recordsOffset = this.position;
+    }
+    
+    @Override
+    public void writeFooter(Scheduler scheduler) throws IOException
+    {
+        putTime(scheduler.end);
+        ProcessTable table = scheduler.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            putTime(table.wait.get(id));
+            putTime(table.turnaround.get(id));
+        }
+        for (int cpu = 0; cpu < scheduler.getCpus(); cpu++)
+        {
+            putLong(scheduler.busy != null ? scheduler.busy[cpu] : 0);
+            putInt(scheduler.migrations != null ? scheduler.migrations[cpu] : 0);
+        }
+        putLong(this.recordsOffset);
+        putLong(this.records);
+    }
+    
+    @Override
+    public void arrived(long time, int process) throws IOException
+    {
+        record(time, ARRIVED, process, 0);
+    }
+    
+    @Override
+    public void selected(long time, int cpu, int process, long burst) throws IOException
+    {
+        record(time, SELECTED | cpu << TYPE_BITS, process, burst);
+    }
+    
+    //  Binary traces are never compact, a stretch is recorded as its first selection
+    @Override
+    public void selected(long time, long until, int cpu, int process, long burst) throws IOException
+    {
+        selected(time, cpu, process, burst);
+    }
+    
+    @Override
+    public void finished(long time, int cpu, int process) throws IOException
+    {
+        record(time, FINISHED | cpu << TYPE_BITS, process, 0);
+    }
+    
+    @Override
+    public void idle(long time, long until) throws IOException
+    {
+        for (long t = time; t < until; t++)
+        {
+            record(t, IDLE, -1, 0);
+        }
+    }
+    
+    void record(long time, int type, int process, long burst) throws IOException
+    {
+        if (this.wide)
+        {
+            reserve(WIDE_RECORD);
+            this.buffer.putLong(time).putInt(type).putInt(process).putLong(burst);
+            this.position += WIDE_RECORD;
+        }
+        else
+        {
+            reserve(RECORD);
+            this.buffer.putInt((int) time).putInt(type).putInt(process).putInt((int) burst);
+            this.position += RECORD;
+        }
+        this.records++;
+    }
+    
+    //  Writes a time as a long in a wide trace, as an int otherwise
+    void putTime(long time) throws IOException
+    {
+        if (this.wide)
+        {
+            putLong(time);
+        }
+        else
+        {
+            putInt((int) time);
+        }
+    }
+    
+    void putInt(int value) throws IOException
+    {
+        reserve(4);
+        this.buffer.putInt(value);
+        this.position += 4;
+    }
+    
+    void putLong(long value) throws IOException
+    {
+        reserve(8);
+        this.buffer.putLong(value);
+        this.position += 8;
+    }
+    
+    void putString(String text) throws IOException
+    {
+        putBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    void putBytes(byte[] bytes) throws IOException
+    {
+        putInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; )
+        {
+            reserve(1);
+            int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        this.position += bytes.length;
+    }
+    
+    //  Flushes the buffer if it cannot take the given number of bytes
+    void reserve(int bytes) throws IOException
+    {
+        if (this.buffer.remaining() < bytes)
+        {
+            flush();
+        }
+    }
+    
+    void flush() throws IOException
+    {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining())
+        {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+//  Buffered text output to a file channel, formatting numbers and copying bytes straight into
+//  a reusable buffer so that writing a line creates no garbage
+class ByteWriter implements Closeable {
+    
+    WritableByteChannel channel;
+    byte[] buffer;
+    ByteBuffer view;
+    int length;
+    //  Bytes handed to the channel so far
+    long written;
+    
+    /**
+     * Creates (or truncates) the output file
+     * @param filename
+     *      Path of the output file
+     * @throws IOException
+     *      Exception if the output file cannot be created
+     */
+    public ByteWriter(String filename) throws IOException
+    {
+        this.channel = new FileOutputStream(filename).getChannel();
+        this.buffer = new byte[1 << 16];
+        this.view = ByteBuffer.wrap(this.buffer);
+        this.length = 0;
+        this.written = 0;
+    }
+    
+    /**
+     * Writes to an open channel, such as a socket, which close() then closes as well
+     * @param channel
+     *      Channel the output is written to
+     */
+    public ByteWriter(WritableByteChannel channel)
+    {
+        this.channel = channel;
+        this.buffer = new byte[1 << 16];
+        this.view = ByteBuffer.wrap(this.buffer);
+        this.length = 0;
+        this.written = 0;
+    }
+    
+    /**
+     * Opens an existing output file to continue it, dropping everything past an offset
+     * @param filename
+     *      Path of the output file
+     * @param offset
+     *      Length of the file to keep
+     * @throws IOException
+     *      Exception if the output file cannot be opened or is shorter than the offset
+     */
+    public ByteWriter(String filename, long offset) throws IOException
+    {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+        if (channel.size() < offset)
+        {
+            channel.close();
+            throw new IOException(filename + " is shorter than the checkpoint expects");
+        }
+        channel.truncate(offset);
+        channel.position(offset);
+        this.channel = channel;
+        this.buffer = new byte[1 << 16];
+        this.view = ByteBuffer.wrap(this.buffer);
+        this.length = 0;
+        this.written = offset;
+    }
+    
+    void put(byte value) throws IOException
+    {
+        if (this.length == this.buffer.length)
+        {
+            flush();
+        }
+        this.buffer[this.length++] = value;
+    }
+    
+    void put(byte[] bytes) throws IOException
+    {
+        if (this.length + bytes.length > this.buffer.length)
+        {
+            flush();
+            //  Write anything larger than the whole buffer straight through
+            if (bytes.length > this.buffer.length)
+            {
+                write(ByteBuffer.wrap(bytes));
+                this.written += bytes.length;
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+        this.length += bytes.length;
+    }
+    
+    //  Writes the decimal digits of a number without going through a String
+    void putNumber(long value) throws IOException
+    {
+        //  Most numbers fit in 32 bits, whose division is the cheaper one
+        if (value == (int) value)
+        {
+            putNumber((int) value);
+            return;
+        }
+        if (this.length + 20 > this.buffer.length)
+        {
+            flush();
+        }
+        if (value < 0)
+        {
+            this.buffer[this.length++] = '-';
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10)
+        {
+            digits++;
+        }
+        for (int i = this.length + digits - 1; i >= this.length; i--)
+        {
+            this.buffer[i] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        }
+        this.length += digits;
+    }
+    
+    void putNumber(int value) throws IOException
+    {
+        if (this.length + 11 > this.buffer.length)
+        {
+            flush();
+        }
+        if (value < 0)
+        {
+            this.buffer[this.length++] = '-';
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10)
+        {
+            digits++;
+        }
+        for (int i = this.length + digits - 1; i >= this.length; i--)
+        {
+            this.buffer[i] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        }
+        this.length += digits;
+    }
+    
+    //  Hands the buffered bytes to the file channel
+    void flush() throws IOException
+    {
+        this.view.clear();
+        this.view.limit(this.length);
+        write(this.view);
+        this.written += this.length;
+        this.length = 0;
+    }
+    
+    //  Flushes and forces the output to disk, returning its length
+    public long mark() throws IOException
+    {
+        flush();
+        if (this.channel instanceof FileChannel)
+        {
+            ((FileChannel) this.channel).force(false);
+        }
+        return this.written;
+    }
+    
+    //  Returns the length of the output, counting what is still buffered
+    public long length()
+    {
+        return this.written + this.length;
+    }
+    
+    void write(ByteBuffer bytes) throws IOException
+    {
+        while (bytes.hasRemaining())
+        {
+            this.channel.write(bytes);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            this.channel.close();
+        }
+    }
+    
+    static byte[] bytes(String text)
+    {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
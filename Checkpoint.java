@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+//  Snapshot of the engine state taken now and then while a simulation runs, so a crashed run can be resumed
+//
+//  Layout:
+//      header      magic "CPCK", version, input fingerprint (a long), processors, processes
+//      snapshot    time, trace offset, arrivals handed out so far
+//      processes   rows of the processes that have arrived, in order of arrival, see SnapshotBuffer,
+//                  the others are still as parsed
+//      processors  processors and policies, see SnapshotBuffer
+//  Times, bursts and the trace offset are longs, other numbers ints, all big-endian. A snapshot is written
+//  to a temporary file and moved over the last one, so a crash while writing leaves the previous snapshot intact
+class Checkpoint implements Snapshots {
+
+    static final int MAGIC = 0x4350434b;
+    static final int VERSION = 4;
+
+    //  Engine iterations between looks at the clock, so the check costs next to nothing
+    static final int CHECK_EVERY = 1 << 12;
+
+    String filename;
+    long interval;
+    long due;
+    int countdown;
+    long fingerprint;
+
+    //  Snapshot being written, or being read back while resuming
+    SnapshotBuffer state;
+    boolean resuming;
+
+    //  Header of a loaded snapshot
+    long time;
+    long traceOffset;
+
+    /**
+     * Creates a checkpoint schedule
+     * @param filename
+     *      Path of the snapshot file
+     * @param seconds
+     *      Wall-clock seconds between snapshots, 0 to take one every few thousand engine steps
+     */
+    public Checkpoint(String filename, long seconds)
+    {
+        this.filename = filename;
+        this.interval = Math.max(seconds, 0) * 1_000_000_000L;
+        this.state = new SnapshotBuffer();
+        this.resuming = false;
+    }
+
+    //  Hashes everything a run depends on before the run changes any of it,
+    //  so a snapshot is only resumed against the input it was taken from
+    @Override
+    public void prepare(Scheduler scheduler)
+    {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + scheduler.use.hashCode();
+        hash = 31 * hash + scheduler.runfor;
+        hash = 31 * hash + (scheduler.quantum != null ? scheduler.quantum : -1);
+        hash = 31 * hash + scheduler.getCpus();
+        hash = 31 * hash + scheduler.trace.hashCode();
+        ProcessTable table = scheduler.table;
+        hash = 31 * hash + table.size;
+        for (int id = 0; id < table.size; id++)
+        {
+            hash = 31 * hash + table.arrival.get(id);
+            hash = 31 * hash + table.burst.get(id);
+            hash = 31 * hash + table.priority[id];
+            hash = 31 * hash + Arrays.hashCode(table.name[id]);
+        }
+        this.fingerprint = hash;
+        this.due = System.nanoTime() + this.interval;
+        this.countdown = CHECK_EVERY;
+    }
+
+    /**
+     * Reads the snapshot to resume from
+     * @param scheduler
+     *      Freshly parsed Scheduler the snapshot must have been taken from, already prepared
+     * @return
+     *      Error message, or null if the run can resume
+     * @throws IOException
+     *      Exception if the snapshot cannot be read
+     */
+    @Override
+    public String load(Scheduler scheduler) throws IOException
+    {
+        clean();
+        Path path = Paths.get(this.filename);
+        if (!Files.exists(path))
+        {
+            return "Error: No checkpoint to resume from.";
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    break;
+                }
+            }
+        }
+        buffer.flip();
+        if (buffer.remaining() < 40 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+        {
+            return "Error: " + this.filename + " is not a checkpoint.";
+        }
+        if (buffer.getLong() != this.fingerprint || buffer.getInt() != scheduler.getCpus()
+            || buffer.getInt() != scheduler.table.size)
+        {
+            return "Error: Checkpoint does not match " + Schedule.inputFilename + ".";
+        }
+        this.time = buffer.getLong();
+        this.traceOffset = buffer.getLong();
+        this.state.wrap(buffer);
+        this.resuming = true;
+        return null;
+    }
+    
+    /**
+     * Opens the trace of a run, continuing the one the loaded snapshot points into
+     * @param filename
+     *      Path of the trace file
+     * @param binary
+     *      True for a binary trace
+     * @return
+     *      Trace with its header written or taken up, ready for the engine
+     * @throws IOException
+     *      Exception if the trace cannot be opened
+     */
+    @Override
+    public TraceSink open(Scheduler scheduler, String filename, boolean binary) throws IOException
+    {
+        if (!this.resuming)
+        {
+            clean();
+            TraceSink out = Schedule.openTrace(filename, binary, -1);
+            out.writeHeader(scheduler);
+            return out;
+        }
+        TraceSink out = Schedule.openTrace(filename, binary, this.traceOffset);
+        out.resume(scheduler);
+        return out;
+    }
+
+    @Override
+    public boolean resuming()
+    {
+        return this.resuming;
+    }
+
+    //  Returns true once every so many calls if a snapshot is due
+    @Override
+    public boolean due()
+    {
+        if (--this.countdown > 0)
+        {
+            return false;
+        }
+        this.countdown = CHECK_EVERY;
+        return System.nanoTime() - this.due >= 0;
+    }
+
+    /**
+     * Writes a snapshot of the engine between two time steps
+     * @throws IOException
+     *      Exception if the trace cannot be flushed or the snapshot cannot be written
+     */
+    @Override
+    public void save(long time, Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        ProcessorLoad load, int[] running, long[] dispatched, long[] charged, long[] busy, int[] migrations,
+        TraceSink out) throws IOException
+    {
+        //  The trace must reach the disk before the snapshot that points into it
+        long traceOffset = out.mark();
+
+        SnapshotBuffer state = this.state;
+        ProcessTable table = scheduler.table;
+        state.clear();
+        state.putInt(MAGIC);
+        state.putInt(VERSION);
+        state.putLong(this.fingerprint);
+        state.putInt(policies.length);
+        state.putInt(table.size);
+        state.putLong(time);
+        state.putLong(traceOffset);
+        state.putInt(scheduler.arrived);
+        state.putRows(table, scheduler.arrivals, scheduler.arrived);
+        state.putProcessors(policies, events, load, running, dispatched, charged, busy, migrations);
+        ByteBuffer buffer = state.buffer;
+        buffer.flip();
+
+        Path path = Paths.get(this.filename);
+        Path temporary = Paths.get(this.filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.due = System.nanoTime() + this.interval;
+    }
+    
+    /**
+     * Puts the engine back in the state of the loaded snapshot
+     * @return
+     *      Time the snapshot was taken at
+     */
+    @Override
+    public long restore(Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        ProcessorLoad load, int[] running, long[] dispatched, long[] charged, long[] busy, int[] migrations)
+    {
+        SnapshotBuffer state = this.state;
+        scheduler.arrived = state.getInt();
+        state.getRows(scheduler.table, scheduler.arrivals, scheduler.arrived);
+        state.getProcessors(policies, events, load, running, dispatched, charged, busy, migrations);
+        this.resuming = false;
+        state.reset();
+        return this.time;
+    }
+
+    //  Deletes the snapshot once the run it belongs to has finished, with its trace complete
+    //  The trace is made durable first, so a crash in between still leaves a snapshot to resume from
+    @Override
+    public void finish(TraceSink out) throws IOException
+    {
+        out.mark();
+        Files.deleteIfExists(Paths.get(this.filename));
+    }
+    
+    //  Deletes the temporary file a crash while writing a snapshot can leave behind
+    void clean() throws IOException
+    {
+        Files.deleteIfExists(Paths.get(this.filename + ".tmp"));
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+
+
+//  Indexed min-heap of pending events, holding at most one event per processor slot
+class EventQueue {
+    
+    //  Event types, applied in this order when due at the same time
+    static final int COMPLETION = 0;
+    static final int EXPIRATION = 1;
+    
+    int[] heap;
+    int[] position;
+    long[] time;
+    int[] type;
+    int[] process;
+    int size;
+    
+    /**
+     * Creates an empty event queue
+     * @param slots
+     *      Number of processors, each can have one pending event
+     */
+    public EventQueue(int slots)
+    {
+        this.heap = new int[slots];
+        this.position = new int[slots];
+        this.time = new long[slots];
+        this.type = new int[slots];
+        this.process = new int[slots];
+        this.size = 0;
+        Arrays.fill(this.position, -1);
+    }
+    
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+    
+    public boolean isScheduled(int slot)
+    {
+        return this.position[slot] >= 0;
+    }
+    
+    //  Returns the time of the earliest pending event, or Long.MAX_VALUE if there is none
+    public long peekTime()
+    {
+        return this.size > 0 ? this.time[this.heap[0]] : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Sets the pending event of a slot, replacing any event it already had
+     * @param slot
+     *      Processor the event belongs to
+     * @param time
+     *      Time the event is due
+     * @param type
+     *      COMPLETION or EXPIRATION
+     * @param process
+     *      Id of the process the event is about
+     */
+    public void schedule(int slot, long time, int type, int process)
+    {
+        this.time[slot] = time;
+        this.type[slot] = type;
+        this.process[slot] = process;
+        if (this.position[slot] < 0)
+        {
+            this.heap[this.size] = slot;
+            this.position[slot] = this.size++;
+        }
+        siftDown(siftUp(this.position[slot]));
+    }
+    
+    //  Removes the earliest pending event and returns its slot, or -1 if there is none
+    public int poll()
+    {
+        if (this.size == 0)
+        {
+            return -1;
+        }
+        int slot = this.heap[0];
+        remove(slot);
+        return slot;
+    }
+    
+    //  Drops the pending event of a slot, if it has one
+    public void cancel(int slot)
+    {
+        if (this.position[slot] >= 0)
+        {
+            remove(slot);
+        }
+    }
+    
+    void remove(int slot)
+    {
+        int index = this.position[slot];
+        this.position[slot] = -1;
+        if (--this.size > index)
+        {
+            this.heap[index] = this.heap[this.size];
+            this.position[this.heap[index]] = index;
+            siftDown(siftUp(index));
+        }
+    }
+    
+    boolean less(int a, int b)
+    {
+        if (this.time[a] != this.time[b])
+        {
+            return this.time[a] < this.time[b];
+        }
+        if (this.type[a] != this.type[b])
+        {
+            return this.type[a] < this.type[b];
+        }
+        return a < b;
+    }
+    
+    int siftUp(int index)
+    {
+        int slot = this.heap[index];
+        while (index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+            if (!less(slot, this.heap[parent]))
+            {
+                break;
+            }
+            this.heap[index] = this.heap[parent];
+            this.position[this.heap[index]] = index;
+            index = parent;
+        }
+        this.heap[index] = slot;
+        this.position[slot] = index;
+        return index;
+    }
+    
+    void siftDown(int index)
+    {
+        int slot = this.heap[index];
+        int half = this.size >>> 1;
+        while (index < half)
+        {
+            int child = 2 * index + 1;
+            if (child + 1 < this.size && less(this.heap[child + 1], this.heap[child]))
+            {
+                child++;
+            }
+            if (!less(this.heap[child], slot))
+            {
+                break;
+            }
+            this.heap[index] = this.heap[child];
+            this.position[this.heap[index]] = index;
+            index = child;
+        }
+        this.heap[index] = slot;
+        this.position[slot] = index;
+    }
+}
@@ -0,0 +1,98 @@
+//  Runs processes to completion in the order they arrive
+class FirstComeFirstServed implements SchedulingPolicy {
+    
+    ReadyQueue queue;
+    
+    public FirstComeFirstServed(Scheduler scheduler)
+    {
+        this.queue = new ReadyQueue(scheduler.capacity());
+    }
+    
+    @Override
+    public void onArrival(int process, long time)
+    {
+        this.queue.add(process);
+    }
+    
+    @Override
+    public int pickNext(long time)
+    {
+        return this.queue.poll();
+    }
+    
+    @Override
+    public long slice(int process)
+    {
+        return UNLIMITED;
+    }
+    
+    @Override
+    public boolean repeats()
+    {
+        return true;
+    }
+    
+    @Override
+    public void onTick(int process, long elapsed, long time)
+    {
+    }
+    
+    @Override
+    public boolean preempts(int running, long time)
+    {
+        return false;
+    }
+    
+    @Override
+    public void onPreempt(int process, long time)
+    {
+        this.queue.add(process);
+    }
+    
+    @Override
+    public void onExpire(int process, long time)
+    {
+        this.queue.add(process);
+    }
+    
+    @Override
+    public void onComplete(int process, long time)
+    {
+    }
+    
+    @Override
+    public int steal(int running)
+    {
+        return this.queue.pollLast();
+    }
+    
+    @Override
+    public void onMigrate(int process, SchedulingPolicy from, long time)
+    {
+        this.queue.add(process);
+    }
+    
+    @Override
+    public void save(SnapshotBuffer out)
+    {
+        out.putQueue(this.queue);
+    }
+    
+    @Override
+    public void restore(SnapshotBuffer in)
+    {
+        in.getQueue(this.queue);
+    }
+    
+    @Override
+    public int waiting()
+    {
+        return this.queue.size();
+    }
+    
+    @Override
+    public int waiting(int index)
+    {
+        return this.queue.get(index);
+    }
+}
@@ -0,0 +1,110 @@
+//  Log-linear histogram of non-negative values in the style of HdrHistogram
+//  Values below 128 are counted exactly, larger ones in buckets 1/64 of their power of two wide,
+//  so any percentile is within 1.6% of the true value while recording stays a few shifts and an add
+class Histogram {
+
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int HALF = SUB_BUCKETS / 2;
+
+    long[] counts;
+    long total;
+    long max;
+    double sum;
+
+    public Histogram()
+    {
+        this.counts = new long[SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF];
+        this.total = 0;
+        this.max = 0;
+        this.sum = 0;
+    }
+
+    public void record(long value)
+    {
+        record(value, 1);
+    }
+
+    /**
+     * Records a value several times at once
+     * @param value
+     *      Value to record, negative values are recorded as 0
+     * @param count
+     *      Number of times the value occurred, or its weight such as a duration
+     */
+    public void record(long value, long count)
+    {
+        if (count <= 0)
+        {
+            return;
+        }
+        value = Math.max(value, 0);
+        this.counts[index(value)] += count;
+        this.total += count;
+        this.sum += (double) value * count;
+        this.max = Math.max(this.max, value);
+    }
+
+    public long getTotal()
+    {
+        return this.total;
+    }
+
+    public long getMax()
+    {
+        return this.max;
+    }
+
+    public double getMean()
+    {
+        return this.total > 0 ? this.sum / this.total : 0;
+    }
+
+    /**
+     * Returns the value at a percentile
+     * @param percentile
+     *      Percentile between 0 and 100
+     * @return
+     *      Highest value in the bucket holding the percentile, never more than the largest value recorded
+     */
+    public long getPercentile(double percentile)
+    {
+        if (this.total == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.total));
+        long seen = 0;
+        for (int index = 0; index < this.counts.length; index++)
+        {
+            seen += this.counts[index];
+            if (seen >= rank)
+            {
+                return Math.min(highest(index), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    //  Largest value that falls in a bucket
+    static long highest(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long sub = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
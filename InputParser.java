@@ -0,0 +1,513 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+//  Single-pass parser over a memory-mapped input file, or over input already in memory
+//  Follows the same rules and error messages as Schedule.readInput and Schedule.parseInput,
+//  but tokenizes the mapped bytes in place and writes processes straight into the process table
+class InputParser {
+
+    static final byte[] PROCESSCOUNT = bytes("processcount");
+    static final byte[] RUNFOR = bytes("runfor");
+    static final byte[] USE = bytes("use");
+    static final byte[] QUANTUM = bytes("quantum");
+    static final byte[] TRACE = bytes("trace");
+    static final byte[] CPUS = bytes("cpus");
+    static final byte[] PROCESS_NAME = bytes("process name");
+    static final byte[] ARRIVAL = bytes("arrival");
+    static final byte[] BURST = bytes("burst");
+    static final byte[] PRIORITY = bytes("priority");
+    static final byte[] END = bytes("end");
+
+    //  Largest window mapped at once
+    static final long WINDOW = 1L << 30;
+
+    ByteBuffer buffer;
+    Scheduler scheduler;
+
+    //  Bounds of the token most recently cut by segment() or word()
+    int from;
+    int to;
+
+    /**
+     * Parses an input file into a Scheduler
+     * @param filename
+     *      Path of the input file
+     * @return
+     *      Scheduler object with properties read from input file
+     * @throws IOException
+     *      Exception if unable to read input file
+     * @throws NumberFormatException
+     *      Exception occurs when an unexpected value type is read (string instead of number)
+     * @throws IndexOutOfBoundsException
+     *      Exception occurs if input line is incomplete (process name line is missing tokens)
+     */
+    public static Scheduler parse(String filename) throws IOException, NumberFormatException, IndexOutOfBoundsException
+    {
+        InputParser parser = new InputParser(new Scheduler());
+        parser.read(filename);
+        return Schedule.validateInput(parser.scheduler);
+    }
+
+    public InputParser(Scheduler scheduler)
+    {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Reads an input file line by line up to its "end" line
+     * @param filename
+     *      Path of the input file
+     * @throws IOException
+     *      Exception if unable to read input file
+     */
+    public void read(String filename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            long offset = 0;
+
+            //  Map the file window by window, each window starting at the beginning of a line
+            while (offset < size)
+            {
+                long length = Math.min(WINDOW, size - offset);
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+
+                int position = lines((int) length, offset + length == size);
+                if (position < 0)
+                {
+                    break;
+                }
+                offset += position;
+            }
+        }
+    }
+
+    /**
+     * Reads input held in memory line by line up to its "end" line
+     * @param bytes
+     *      Input text, from its position to its limit
+     * @throws IOException
+     *      Never for input that is all in memory, declared for the windowed reader it shares
+     */
+    public void read(ByteBuffer bytes) throws IOException
+    {
+        this.buffer = bytes.slice();
+        lines(this.buffer.limit(), true);
+    }
+
+    /**
+     * Handles the lines of the current buffer
+     * @param limit
+     *      Offset just past the last byte to handle
+     * @param last
+     *      True if the input ends at the limit, false if a line cut off there continues in the next window
+     * @return
+     *      Offset of the first line left for the next window, or -1 once the "end" line has been handled
+     * @throws IOException
+     *      Exception if a line does not fit in a window
+     */
+    int lines(int limit, boolean last) throws IOException
+    {
+        int position = 0;
+        while (position < limit)
+        {
+            int lineEnd = position;
+            while (lineEnd < limit && this.buffer.get(lineEnd) != '\n' && this.buffer.get(lineEnd) != '\r')
+            {
+                lineEnd++;
+            }
+            //  Leave a line cut off by the window for the next window
+            if (lineEnd == limit && !last)
+            {
+                if (position == 0)
+                {
+                    throw new IOException("Line longer than " + WINDOW + " bytes");
+                }
+                break;
+            }
+            if (line(position, lineEnd))
+            {
+                return -1;
+            }
+            position = lineEnd + 1;
+        }
+        return position;
+    }
+
+    /**
+     * Handles one line of input
+     * @param start
+     *      Offset of the first byte of the line
+     * @param end
+     *      Offset just past the last byte of the line, excluding the terminator
+     * @return
+     *      True if the line is the "end" line and parsing should stop
+     */
+    boolean line(int start, int end)
+    {
+        //  Strip the comment, a line made only of '#' is rejected like String.split does
+        int hash = indexOf(start, end, (byte) '#');
+        if (hash == start && countOf(start, end, (byte) '#') == end - start)
+        {
+            throw new IndexOutOfBoundsException("Comment line");
+        }
+        if (hash >= 0)
+        {
+            end = hash;
+        }
+        while (start < end && (this.buffer.get(start) & 0xFF) <= ' ')
+        {
+            start++;
+        }
+        while (end > start && (this.buffer.get(end - 1) & 0xFF) <= ' ')
+        {
+            end--;
+        }
+        if (start == end)
+        {
+            return false;
+        }
+
+        //  Use keywords at beginning of each line to identify the type of input
+        if (startsWith(start, end, PROCESSCOUNT))
+        {
+            directive();
+            segment(start, end, PROCESSCOUNT);
+            this.scheduler.processcount = number(this.from, this.to);
+            return false;
+        }
+
+        if (startsWith(start, end, RUNFOR))
+        {
+            directive();
+            segment(start, end, RUNFOR);
+            this.scheduler.runfor = longNumber(this.from, this.to);
+            return false;
+        }
+
+        if (startsWith(start, end, USE))
+        {
+            directive();
+            segment(start, end, USE);
+            this.scheduler.use = string(this.from, this.to);
+            this.scheduler.usename = this.scheduler.useref.get(this.scheduler.use);
+            return false;
+        }
+
+        if (startsWith(start, end, QUANTUM))
+        {
+            directive();
+            segment(start, end, QUANTUM);
+            this.scheduler.quantum = number(this.from, this.to);
+            return false;
+        }
+
+        if (startsWith(start, end, TRACE))
+        {
+            directive();
+            segment(start, end, TRACE);
+            this.scheduler.trace = string(this.from, this.to);
+            return false;
+        }
+
+        if (startsWith(start, end, CPUS))
+        {
+            directive();
+            segment(start, end, CPUS);
+            this.scheduler.cpus = number(this.from, this.to);
+            return false;
+        }
+
+        //  Note: Will only detect "process name" if separator is a space
+        if (startsWith(start, end, PROCESS_NAME))
+        {
+            process(start, end);
+            return false;
+        }
+
+        if (startsWith(start, end, END))
+        {
+            return true;
+        }
+
+        //  Print error if input line count not be recognized
+        message("Error: Could not parse line from input file.");
+        message("\t" + string(start, end));
+        return false;
+    }
+
+    //  Parses "process name X arrival A burst B [priority P]" into a new row of the process table
+    void process(int start, int end)
+    {
+        segment(start, end, PROCESS_NAME);
+        int line = this.to;
+        word(this.from, line);
+        int nameFrom = this.from;
+        int nameTo = this.to;
+        int rest = trimStart(next(nameTo, line), line);
+
+        if (startsWith(rest, line, ARRIVAL))
+        {
+            segment(rest, line, ARRIVAL);
+            line = this.to;
+            word(this.from, line);
+            long arrival = longNumber(this.from, this.to);
+            rest = trimStart(next(this.to, line), line);
+
+            if (startsWith(rest, line, BURST))
+            {
+                segment(rest, line, BURST);
+                line = this.to;
+                int burstTo = this.from + wordLength(this.from, line);
+                long burst = longNumber(this.from, burstTo);
+                
+                //  Optional priority after the burst, lower values run first
+                int priority = 0;
+                if (burstTo < line)
+                {
+                    rest = trimStart(burstTo + 1, line);
+                    if (startsWith(rest, line, PRIORITY))
+                    {
+                        segment(rest, line, PRIORITY);
+                        priority = number(this.from, this.from + wordLength(this.from, this.to));
+                    }
+                }
+                //  Create new Process only if all parameters were found in line
+                accept(nameFrom, nameTo, arrival, burst, priority);
+                return;
+            }
+        }
+
+        message("Error: Unable to parse process parameters from input file.");
+    }
+
+    //  Hook for each parsed process, adds it to the process table
+    void accept(int nameFrom, int nameTo, long arrival, long burst, int priority)
+    {
+        this.scheduler.addProcess(copy(nameFrom, nameTo), arrival, burst, priority);
+    }
+
+    //  Hook called before a processcount, runfor, use, quantum, trace or cpus line is applied
+    void directive()
+    {
+    }
+
+    //  Hook for error messages about the input, prints them
+    void message(String text)
+    {
+        System.out.println(text);
+    }
+
+    //  Cuts the trimmed text between a leading keyword and its next occurrence, like line.split(keyword)[1].trim()
+    void segment(int start, int end, byte[] keyword)
+    {
+        int from = start + keyword.length;
+        int to = from;
+        while (to < end && !startsWith(to, end, keyword))
+        {
+            to++;
+        }
+        if (from == to)
+        {
+            //  Nothing but repeated keywords after the first one leaves split() without a second element
+            int rest = to;
+            while (rest < end && startsWith(rest, end, keyword))
+            {
+                rest += keyword.length;
+            }
+            if (rest == end)
+            {
+                throw new IndexOutOfBoundsException("Missing value after keyword");
+            }
+        }
+        this.from = trimStart(from, to);
+        this.to = trimEnd(this.from, to);
+    }
+
+    //  Cuts the text before the first space, like text.split(" ", 2)[0], and requires a second part to follow
+    void word(int start, int end)
+    {
+        this.from = start;
+        this.to = start + wordLength(start, end);
+        if (this.to == end)
+        {
+            throw new IndexOutOfBoundsException("Missing value after " + string(start, end));
+        }
+    }
+
+    int wordLength(int start, int end)
+    {
+        int space = indexOf(start, end, (byte) ' ');
+        return (space < 0 ? end : space) - start;
+    }
+
+    //  Returns the offset just past a separating space
+    int next(int space, int end)
+    {
+        return Math.min(space + 1, end);
+    }
+
+    //  Parses a decimal int with an optional sign, with the same rules as Integer.valueOf
+    int number(int start, int end)
+    {
+        if (start == end)
+        {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        boolean negative = false;
+        int position = start;
+        byte first = this.buffer.get(start);
+        if (first == '-' || first == '+')
+        {
+            negative = first == '-';
+            position++;
+            if (position == end)
+            {
+                throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+            }
+        }
+        long value = 0;
+        for (; position < end; position++)
+        {
+            int digit = this.buffer.get(position) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1)
+            {
+                throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+        {
+            throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+        }
+        return (int) value;
+    }
+
+    //  Parses a decimal long with an optional sign, with the same rules as Long.valueOf
+    //  Numbers short enough that they cannot overflow an int, nearly all of them, take the int parser
+    long longNumber(int start, int end)
+    {
+        if (end - start <= 9)
+        {
+            return number(start, end);
+        }
+        boolean negative = false;
+        int position = start;
+        byte first = this.buffer.get(start);
+        if (first == '-' || first == '+')
+        {
+            negative = first == '-';
+            position++;
+        }
+        //  Accumulated as a negative number, whose range holds Long.MIN_VALUE
+        long value = 0;
+        for (; position < end; position++)
+        {
+            int digit = this.buffer.get(position) - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10)
+            {
+                throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative)
+        {
+            if (value == Long.MIN_VALUE)
+            {
+                throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    String string(int start, int end)
+    {
+        return new String(copy(start, end), StandardCharsets.UTF_8);
+    }
+    
+    byte[] copy(int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = this.buffer.get(start + i);
+        }
+        return bytes;
+    }
+
+    boolean startsWith(int start, int end, byte[] keyword)
+    {
+        if (end - start < keyword.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++)
+        {
+            if (this.buffer.get(start + i) != keyword[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int indexOf(int start, int end, byte value)
+    {
+        for (int i = start; i < end; i++)
+        {
+            if (this.buffer.get(i) == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int countOf(int start, int end, byte value)
+    {
+        int count = 0;
+        for (int i = start; i < end; i++)
+        {
+            if (this.buffer.get(i) == value)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int trimStart(int start, int end)
+    {
+        while (start < end && (this.buffer.get(start) & 0xFF) <= ' ')
+        {
+            start++;
+        }
+        return start;
+    }
+
+    int trimEnd(int start, int end)
+    {
+        while (end > start && (this.buffer.get(end - 1) & 0xFF) <= ' ')
+        {
+            end--;
+        }
+        return end;
+    }
+
+    static byte[] bytes(String text)
+    {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
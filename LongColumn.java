@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+
+//  Column of 64-bit values, indexed by process id
+//  Values are stored as 32-bit for as long as every value written fits, which keeps the columns of
+//  ordinary inputs at half the size. The first value that does not fit widens the column for good.
+class LongColumn {
+
+    int[] narrow;
+    long[] wide;
+
+    public LongColumn(int capacity)
+    {
+        this.narrow = new int[capacity];
+    }
+
+    public long get(int index)
+    {
+        return this.wide == null ? this.narrow[index] : this.wide[index];
+    }
+
+    public void set(int index, long value)
+    {
+        if (this.wide == null)
+        {
+            if (value == (int) value)
+            {
+                this.narrow[index] = (int) value;
+                return;
+            }
+            widen();
+        }
+        this.wide[index] = value;
+    }
+
+    public void add(int index, long delta)
+    {
+        set(index, get(index) + delta);
+    }
+
+    //  Returns true once a value has needed more than 32 bits
+    public boolean isWide()
+    {
+        return this.wide != null;
+    }
+
+    public int length()
+    {
+        return this.wide == null ? this.narrow.length : this.wide.length;
+    }
+
+    //  Returns a copy holding the first values of this column, padded with zeros up to the given capacity
+    public LongColumn copyOf(int capacity)
+    {
+        LongColumn column = new LongColumn(0);
+        if (this.wide == null)
+        {
+            column.narrow = Arrays.copyOf(this.narrow, capacity);
+        }
+        else
+        {
+            column.wide = Arrays.copyOf(this.wide, capacity);
+        }
+        return column;
+    }
+
+    public void grow(int capacity)
+    {
+        if (this.wide == null)
+        {
+            this.narrow = Arrays.copyOf(this.narrow, capacity);
+        }
+        else
+        {
+            this.wide = Arrays.copyOf(this.wide, capacity);
+        }
+    }
+
+    //  Switches the column to 64-bit storage, as if a value that needs it had been written
+    public void widen()
+    {
+        if (this.wide == null)
+        {
+            this.wide = new long[this.narrow.length];
+            for (int i = 0; i < this.narrow.length; i++)
+            {
+                this.wide[i] = this.narrow[i];
+            }
+            this.narrow = null;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+//  Run-level statistics recorded by Schedule.simulate when Scheduler.metrics is set
+//  The engine touches these only at events, and skips them entirely when metrics are off
+class Metrics {
+
+    String use;
+
+    //  Engine events
+    long arrivals;
+    long dispatches;
+    long completions;
+    long expirations;
+    long preemptions;
+    long contextSwitches;
+    long idleTicks;
+    long migrations;
+
+    //  Ready processes at every time unit, and wait and turnaround per process
+    Histogram queueLength = new Histogram();
+    Histogram wait = new Histogram();
+    Histogram turnaround = new Histogram();
+
+    //  Wall-clock time per phase, the trace lines written during the run count towards simulate
+    long parseNanos;
+    long simulateNanos;
+    long writeNanos;
+
+    //  Processes that have arrived but not finished, and the process each processor dispatched last
+    int live;
+    int[] last = { -1 };
+
+    public long getEvents()
+    {
+        return this.arrivals + this.completions + this.expirations + this.preemptions;
+    }
+
+    public long getArrivals()
+    {
+        return this.arrivals;
+    }
+
+    public long getDispatches()
+    {
+        return this.dispatches;
+    }
+
+    public long getCompletions()
+    {
+        return this.completions;
+    }
+
+    public long getExpirations()
+    {
+        return this.expirations;
+    }
+
+    public long getPreemptions()
+    {
+        return this.preemptions;
+    }
+
+    public long getContextSwitches()
+    {
+        return this.contextSwitches;
+    }
+
+    public long getIdleTicks()
+    {
+        return this.idleTicks;
+    }
+
+    public long getMigrations()
+    {
+        return this.migrations;
+    }
+
+    public Histogram getQueueLength()
+    {
+        return this.queueLength;
+    }
+
+    public Histogram getWait()
+    {
+        return this.wait;
+    }
+
+    public Histogram getTurnaround()
+    {
+        return this.turnaround;
+    }
+
+    public long getParseNanos()
+    {
+        return this.parseNanos;
+    }
+
+    public long getSimulateNanos()
+    {
+        return this.simulateNanos;
+    }
+
+    public long getWriteNanos()
+    {
+        return this.writeNanos;
+    }
+
+    void arrived()
+    {
+        this.arrivals++;
+        this.live++;
+    }
+
+    void dispatched(int cpu, int process)
+    {
+        this.dispatches++;
+        if (cpu >= this.last.length)
+        {
+            int length = this.last.length;
+            this.last = Arrays.copyOf(this.last, cpu + 1);
+            Arrays.fill(this.last, length, cpu + 1, -1);
+        }
+        if (this.last[cpu] >= 0 && this.last[cpu] != process)
+        {
+            this.contextSwitches++;
+        }
+        this.last[cpu] = process;
+    }
+
+    //  Time passed with a number of processes ready but not running
+    void elapsed(int ready, long elapsed)
+    {
+        this.queueLength.record(ready, elapsed);
+    }
+
+    void completed(long wait, long turnaround)
+    {
+        this.completions++;
+        this.live--;
+        this.wait.record(wait);
+        this.turnaround.record(turnaround);
+    }
+
+    /**
+     * Writes the metrics as a JSON object
+     * @param filename
+     *      Path of the JSON file
+     * @throws IOException
+     *      Exception if the file cannot be written
+     */
+    public void write(String filename) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(filename))))
+        {
+            writer.println(toJson());
+        }
+    }
+
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"use\": \"").append(this.use).append("\",\n");
+        json.append("  \"events\": ").append(getEvents()).append(",\n");
+        json.append("  \"arrivals\": ").append(this.arrivals).append(",\n");
+        json.append("  \"dispatches\": ").append(this.dispatches).append(",\n");
+        json.append("  \"completions\": ").append(this.completions).append(",\n");
+        json.append("  \"expirations\": ").append(this.expirations).append(",\n");
+        json.append("  \"preemptions\": ").append(this.preemptions).append(",\n");
+        json.append("  \"contextSwitches\": ").append(this.contextSwitches).append(",\n");
+        json.append("  \"idleTicks\": ").append(this.idleTicks).append(",\n");
+        json.append("  \"migrations\": ").append(this.migrations).append(",\n");
+        json.append("  \"queueLength\": ").append(json(this.queueLength)).append(",\n");
+        json.append("  \"wait\": ").append(json(this.wait)).append(",\n");
+        json.append("  \"turnaround\": ").append(json(this.turnaround)).append(",\n");
+        json.append(String.format(Locale.ROOT, "  \"phases\": {\"parseMillis\": %.3f, \"simulateMillis\": %.3f, \"writeMillis\": %.3f}\n",
+            this.parseNanos / 1e6, this.simulateNanos / 1e6, this.writeNanos / 1e6));
+        json.append("}");
+        return json.toString();
+    }
+
+    static String json(Histogram histogram)
+    {
+        return String.format(Locale.ROOT, "{\"count\": %d, \"mean\": %.3f, \"p50\": %d, \"p99\": %d, \"max\": %d}",
+            histogram.getTotal(), histogram.getMean(), histogram.getPercentile(50), histogram.getPercentile(99),
+            histogram.getMax());
+    }
+
+    //  Emits the metrics as a JDK Flight Recorder event, which costs nothing unless a recording is running
+    public void commit()
+    {
+        SimulationEvent event = new SimulationEvent();
+        if (!event.isEnabled())
+        {
+            return;
+        }
+        event.use = this.use;
+        event.events = getEvents();
+        event.contextSwitches = this.contextSwitches;
+        event.preemptions = this.preemptions;
+        event.idleTicks = this.idleTicks;
+        event.migrations = this.migrations;
+        event.waitP50 = this.wait.getPercentile(50);
+        event.waitP99 = this.wait.getPercentile(99);
+        event.waitMax = this.wait.getMax();
+        event.turnaroundP50 = this.turnaround.getPercentile(50);
+        event.turnaroundP99 = this.turnaround.getPercentile(99);
+        event.turnaroundMax = this.turnaround.getMax();
+        event.parse = this.parseNanos;
+        event.simulate = this.simulateNanos;
+        event.write = this.writeNanos;
+        event.commit();
+    }
+
+    @Name("cpuscheduler.Simulation")
+    @Label("Simulation")
+    @Category("CPU Scheduler")
+    @Description("Statistics of one simulation run")
+    static class SimulationEvent extends Event {
+
+        @Label("Algorithm")
+        String use;
+        @Label("Events")
+        long events;
+        @Label("Context Switches")
+        long contextSwitches;
+        @Label("Preemptions")
+        long preemptions;
+        @Label("Idle Ticks")
+        long idleTicks;
+        @Label("Migrations")
+        long migrations;
+        @Label("Wait p50")
+        long waitP50;
+        @Label("Wait p99")
+        long waitP99;
+        @Label("Wait Max")
+        long waitMax;
+        @Label("Turnaround p50")
+        long turnaroundP50;
+        @Label("Turnaround p99")
+        long turnaroundP99;
+        @Label("Turnaround Max")
+        long turnaroundMax;
+        @Label("Parse")
+        @Timespan(Timespan.NANOSECONDS)
+        long parse;
+        @Label("Simulate")
+        @Timespan(Timespan.NANOSECONDS)
+        long simulate;
+        @Label("Write")
+        @Timespan(Timespan.NANOSECONDS)
+        long write;
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+//  Estimates how a policy does on a distribution of workloads rather than on one input file
+//  Every run generates its own workload from the generator's settings and a seed of its own, and
+//  simulates it without a trace. Each pool thread keeps one Scheduler and process table that it
+//  refills for every run, and each task keeps its own results, merged into its parent's once both
+//  halves of a split are done, so runs share nothing mutable
+class MonteCarlo {
+
+    //  Runs simulated by one task before the rest is split off for other threads
+    static final int GRAIN = 8;
+    //  Standard normal quantile of a two-sided 95% confidence interval
+    static final double Z95 = 1.959964;
+    //  Name of every generated process, only a trace would read it
+    static final byte[] NAME = ByteWriter.bytes("P");
+
+    WorkloadGenerator generator;
+    int runs;
+
+    //  Mean results of each run, merged from every task once the runs are done
+    Estimate wait;
+    Estimate turnaround;
+    Estimate makespan;
+    long processes;
+    long finished;
+    long nanos;
+
+    //  Scheduler and generator each pool thread reuses from one run to the next
+    ThreadLocal<Worker> workers;
+
+    /**
+     * Prepares a Monte Carlo estimate
+     * @param generator
+     *      Validated settings of the workloads, its seed is the seed of the first run
+     * @param runs
+     *      Number of workloads to simulate
+     */
+    public MonteCarlo(WorkloadGenerator generator, int runs)
+    {
+        this.generator = generator;
+        this.runs = runs;
+        this.wait = new Estimate();
+        this.turnaround = new Estimate();
+        this.makespan = new Estimate();
+        this.workers = ThreadLocal.withInitial(() -> new Worker(this.generator));
+    }
+
+    /**
+     * Simulates the runs on every core and prints the estimates
+     * @param generator
+     *      Validated settings of the workloads
+     * @param runs
+     *      Number of workloads to simulate
+     */
+    public static void run(WorkloadGenerator generator, int runs)
+    {
+        //  The policy and its parameters are checked once, on a Scheduler without processes
+        Scheduler scheduler = new Scheduler();
+        scheduler.processcount = 0;
+        scheduler.use = generator.use;
+        scheduler.quantum = generator.quantum;
+        scheduler.cpus = generator.cpus;
+        String error = Schedule.inputError(scheduler);
+        if (error == null && !scheduler.useref.containsKey(generator.use))
+        {
+            error = "Error: Invalid \"use\" parameter.";
+        }
+        if (error != null)
+        {
+            System.out.println(error);
+            return;
+        }
+
+        MonteCarlo estimate = new MonteCarlo(generator, runs);
+        estimate.simulate(new ForkJoinPool());
+        PrintWriter writer = new PrintWriter(System.out);
+        estimate.write(writer);
+        writer.flush();
+    }
+
+    //  Simulates every run, returning when all are done
+    public void simulate(ForkJoinPool pool)
+    {
+        long start = System.nanoTime();
+        RunTask task = new RunTask(0, this.runs);
+        try
+        {
+            pool.invoke(task);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        this.nanos = System.nanoTime() - start;
+        this.wait = task.wait;
+        this.turnaround = task.turnaround;
+        this.makespan = task.makespan;
+        this.processes = task.processes;
+        this.finished = task.finished;
+    }
+
+    //  Simulates the runs from one index up to another, splitting the range while it is large,
+    //  and keeps the results of those runs
+    class RunTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        int from;
+        int to;
+        Estimate wait = new Estimate();
+        Estimate turnaround = new Estimate();
+        Estimate makespan = new Estimate();
+        long processes;
+        long finished;
+
+        public RunTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.to - this.from > GRAIN)
+            {
+                int middle = (this.from + this.to) >>> 1;
+                RunTask left = new RunTask(this.from, middle);
+                RunTask right = new RunTask(middle, this.to);
+                invokeAll(left, right);
+                merge(left);
+                merge(right);
+                return;
+            }
+            Worker worker = workers.get();
+            for (int run = this.from; run < this.to; run++)
+            {
+                RunSummary summary = worker.simulate(generator.seed + run);
+                this.wait.add(summary.averageWait());
+                this.turnaround.add(summary.averageTurnaround());
+                this.makespan.add(summary.makespan);
+                this.processes += summary.processes;
+                this.finished += summary.finished;
+            }
+        }
+
+        void merge(RunTask task)
+        {
+            this.wait.merge(task.wait);
+            this.turnaround.merge(task.turnaround);
+            this.makespan.merge(task.makespan);
+            this.processes += task.processes;
+            this.finished += task.finished;
+        }
+    }
+
+    //  Engine state of one pool thread
+    static class Worker {
+
+        WorkloadGenerator generator;
+        Scheduler scheduler;
+        NullTrace out;
+
+        Worker(WorkloadGenerator generator)
+        {
+            this.generator = generator.copy();
+            this.scheduler = new Scheduler();
+            this.scheduler.table = new ProcessTable(generator.count);
+            this.scheduler.processcount = generator.count;
+            this.scheduler.runfor = generator.runfor();
+            this.scheduler.use = generator.use;
+            this.scheduler.usename = this.scheduler.useref.get(generator.use);
+            this.scheduler.quantum = generator.quantum;
+            this.scheduler.cpus = generator.cpus;
+            this.out = new NullTrace();
+        }
+
+        //  Generates the workload of one seed into the reused table and simulates it
+        RunSummary simulate(long seed)
+        {
+            WorkloadGenerator generator = this.generator;
+            Scheduler scheduler = this.scheduler;
+            ProcessTable table = scheduler.table;
+            table.clear();
+            generator.seed = seed;
+            generator.reset();
+            for (int i = 0; i < generator.count; i++)
+            {
+                generator.next();
+                table.add(NAME, generator.arrival, generator.length, 0);
+            }
+            scheduler.arrivals = null;
+            try
+            {
+                Schedule.simulate(scheduler, this.out);
+            }
+            catch (IOException e)
+            {
+                //  Nothing is written
+                throw new UncheckedIOException(e);
+            }
+            return RunSummary.of(scheduler);
+        }
+    }
+
+    //  Mean of a result over the runs with the half-width of its confidence interval
+    //  The mean and the sum of squared deviations from it are updated run by run (Welford's method),
+    //  and two partial results are combined with Chan's formula, so neither subtracts two large
+    //  sums of squares of nearly the same value, which loses every digit of a small spread
+    static class Estimate {
+
+        long count;
+        double mean;
+        double squares;
+
+        void add(double value)
+        {
+            this.count++;
+            double delta = value - this.mean;
+            this.mean += delta / this.count;
+            this.squares += delta * (value - this.mean);
+        }
+
+        void merge(Estimate other)
+        {
+            if (other.count == 0)
+            {
+                return;
+            }
+            long count = this.count + other.count;
+            double delta = other.mean - this.mean;
+            this.mean += delta * other.count / count;
+            this.squares += other.squares + delta * delta * ((double) this.count * other.count / count);
+            this.count = count;
+        }
+
+        double mean()
+        {
+            return this.mean;
+        }
+
+        //  Half-width of the 95% interval around the mean, from the normal approximation of the mean
+        double halfWidth()
+        {
+            if (this.count < 2)
+            {
+                return 0;
+            }
+            double variance = this.squares / (this.count - 1);
+            return Z95 * Math.sqrt(variance / this.count);
+        }
+    }
+
+    //  Writes the estimates with their 95% confidence intervals and the simulation rate
+    public void write(PrintWriter writer)
+    {
+        Scheduler scheduler = new Scheduler();
+        writer.println(this.runs + " workloads of " + this.generator.count + " processes");
+        writer.println("Using " + scheduler.useref.get(this.generator.use));
+        if (this.generator.quantum != null)
+        {
+            writer.println("Quantum " + this.generator.quantum);
+        }
+        if (this.generator.cpus != null && this.generator.cpus > 1)
+        {
+            writer.println("CPUs " + this.generator.cpus);
+        }
+        writer.println();
+
+        writer.println(String.format(Locale.ROOT, "%-16s %14s %14s", "Mean of", "Estimate", "95% interval"));
+        write(writer, "Avg wait", this.wait);
+        write(writer, "Avg turnaround", this.turnaround);
+        write(writer, "Makespan", this.makespan);
+        writer.println(String.format(Locale.ROOT, "%-16s %13.2f%%", "Finished",
+            this.processes > 0 ? 100.0 * this.finished / this.processes : 0));
+        writer.println();
+
+        double seconds = this.nanos / 1e9;
+        writer.println(String.format(Locale.ROOT, "%d simulations in %.3f s, %.0f per second",
+            this.runs, seconds, seconds > 0 ? this.runs / seconds : 0));
+    }
+
+    void write(PrintWriter writer, String name, Estimate estimate)
+    {
+        writer.println(String.format(Locale.ROOT, "%-16s %14.3f %14s", name, estimate.mean(),
+            String.format(Locale.ROOT, "+/- %.3f", estimate.halfWidth())));
+    }
+}
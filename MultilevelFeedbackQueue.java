@@ -0,0 +1,164 @@
+//  Round robin over several queues, always serving the highest non-empty level
+//  Processes arrive at the top level and drop one level each time they use up a slice,
+//  and the slice doubles with every level. An arrival preempts a process running on a
+//  lower level, which keeps its level and rejoins the back of its queue.
+class MultilevelFeedbackQueue implements SchedulingPolicy {
+    
+    static final int LEVELS = 3;
+    
+    ReadyQueue[] queues;
+    int quantum;
+    
+    //  Level of the process picked last, which is the running one, and of the process given up last
+    //  Every other process's level is the queue it waits in, so no per-process column is needed
+    int current;
+    int stolen;
+    
+    public MultilevelFeedbackQueue(Scheduler scheduler)
+    {
+        this.queues = new ReadyQueue[LEVELS];
+        for (int i = 0; i < LEVELS; i++)
+        {
+            this.queues[i] = new ReadyQueue(i == 0 ? scheduler.capacity() : 16);
+        }
+        this.quantum = Math.max(scheduler.quantum, 1);
+        this.current = 0;
+        this.stolen = 0;
+    }
+    
+    @Override
+    public void onArrival(int process, long time)
+    {
+        this.queues[0].add(process);
+    }
+    
+    @Override
+    public int pickNext(long time)
+    {
+        for (int i = 0; i < LEVELS; i++)
+        {
+            if (!this.queues[i].isEmpty())
+            {
+                this.current = i;
+                return this.queues[i].poll();
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public long slice(int process)
+    {
+        return (long) this.quantum << this.current;
+    }
+    
+    //  Only the lowest level keeps a process at the same level and slice when its slice expires
+    @Override
+    public boolean repeats()
+    {
+        return this.current == LEVELS - 1;
+    }
+    
+    @Override
+    public void onTick(int process, long elapsed, long time)
+    {
+    }
+    
+    @Override
+    public boolean preempts(int running, long time)
+    {
+        for (int i = 0; i < this.current; i++)
+        {
+            if (!this.queues[i].isEmpty())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public void onPreempt(int process, long time)
+    {
+        this.queues[this.current].add(process);
+    }
+    
+    @Override
+    public void onExpire(int process, long time)
+    {
+        this.current = Math.min(this.current + 1, LEVELS - 1);
+        this.queues[this.current].add(process);
+    }
+    
+    @Override
+    public void onComplete(int process, long time)
+    {
+    }
+    
+    //  The process at the back of the lowest non-empty level
+    @Override
+    public int steal(int running)
+    {
+        for (int i = LEVELS - 1; i >= 0; i--)
+        {
+            if (!this.queues[i].isEmpty())
+            {
+                this.stolen = i;
+                return this.queues[i].pollLast();
+            }
+        }
+        return -1;
+    }
+    
+    //  A migrated process keeps the level it reached on the other processor
+    @Override
+    public void onMigrate(int process, SchedulingPolicy from, long time)
+    {
+        this.queues[from instanceof MultilevelFeedbackQueue ? ((MultilevelFeedbackQueue) from).stolen : 0].add(process);
+    }
+    
+    @Override
+    public void save(SnapshotBuffer out)
+    {
+        for (ReadyQueue queue : this.queues)
+        {
+            out.putQueue(queue);
+        }
+        out.putInt(this.current);
+    }
+    
+    @Override
+    public void restore(SnapshotBuffer in)
+    {
+        for (ReadyQueue queue : this.queues)
+        {
+            in.getQueue(queue);
+        }
+        this.current = in.getInt();
+    }
+    
+    @Override
+    public int waiting()
+    {
+        int count = 0;
+        for (ReadyQueue queue : this.queues)
+        {
+            count += queue.size();
+        }
+        return count;
+    }
+    
+    @Override
+    public int waiting(int index)
+    {
+        for (ReadyQueue queue : this.queues)
+        {
+            if (index < queue.size())
+            {
+                return queue.get(index);
+            }
+            index -= queue.size();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,60 @@
+//  Trace that discards everything, for runs where only the results matter
+class NullTrace implements TraceSink {
+    
+    @Override
+    public void writeHeader(Scheduler scheduler)
+    {
+    }
+    
+    @Override
+    public void writeFooter(Scheduler scheduler)
+    {
+    }
+    
+    @Override
+    public void resume(Scheduler scheduler)
+    {
+    }
+    
+    @Override
+    public long mark()
+    {
+        return 0;
+    }
+    
+    @Override
+    public long length()
+    {
+        return 0;
+    }
+    
+    @Override
+    public void arrived(long time, int process)
+    {
+    }
+    
+    @Override
+    public void selected(long time, int cpu, int process, long burst)
+    {
+    }
+    
+    @Override
+    public void selected(long time, long until, int cpu, int process, long burst)
+    {
+    }
+    
+    @Override
+    public void finished(long time, int cpu, int process)
+    {
+    }
+    
+    @Override
+    public void idle(long time, long until)
+    {
+    }
+    
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+//  Runs every scheduling policy on one parsed input and tabulates their results side by side
+//  The parsed Scheduler is kept as an immutable snapshot, and each policy runs concurrently on
+//  a fork of it that shares the read-only process columns and copies only the ones it writes
+class PolicyComparison {
+    
+    Scheduler snapshot;
+    List<String> uses;
+    RunSummary[] summaries;
+    
+    /**
+     * Prepares a comparison of every policy that can run with the input's parameters
+     * @param snapshot
+     *      Validated Scheduler, left unchanged by the comparison
+     */
+    public PolicyComparison(Scheduler snapshot)
+    {
+        this.snapshot = snapshot;
+        this.uses = new ArrayList<>();
+        for (String use : snapshot.policyref.keySet())
+        {
+            //  Policies that need a quantum are left out when the input has none
+            if (snapshot.quantum != null || !Scheduler.usesQuantum(use))
+            {
+                this.uses.add(use);
+            }
+        }
+        this.summaries = new RunSummary[this.uses.size()];
+    }
+    
+    //  Simulates every policy on a pool that may be shared, returning when all are done
+    public void simulate(ForkJoinPool pool)
+    {
+        //  Index the arrivals once, every fork shares the index
+        this.snapshot.indexArrivals();
+        
+        PolicyTask[] tasks = new PolicyTask[this.uses.size()];
+        for (int i = 0; i < tasks.length; i++)
+        {
+            tasks[i] = new PolicyTask(i);
+        }
+        pool.invoke(new RecursiveAction()
+        {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
+    }
+    
+    //  Simulates one policy on its own fork of the snapshot
+    class PolicyTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        int index;
+        
+        public PolicyTask(int index)
+        {
+            this.index = index;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            Scheduler scheduler = snapshot.fork();
+            scheduler.use = uses.get(this.index);
+            scheduler.usename = scheduler.useref.get(scheduler.use);
+            try
+            {
+                Schedule.simulate(scheduler, new NullTrace());
+            }
+            catch (IOException e)
+            {
+                //  Nothing is written
+                throw new UncheckedIOException(e);
+            }
+            summaries[this.index] = RunSummary.of(scheduler);
+        }
+    }
+    
+    /**
+     * Writes the comparison table
+     * @param filename
+     *      Path of the output file
+     * @throws IOException
+     *      Exception if the output file cannot be written
+     */
+    public void write(String filename) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(filename))))
+        {
+            write(writer);
+        }
+    }
+    
+    //  Writes the comparison table to a writer that stays open
+    public void write(PrintWriter writer)
+    {
+        writer.println(this.snapshot.processcount + " processes");
+        writer.println("Comparing " + this.uses.size() + " policies");
+        if (this.snapshot.quantum != null)
+        {
+            writer.println("Quantum " + this.snapshot.quantum);
+        }
+        writer.println();
+        
+        writer.println(String.format(Locale.ROOT, "%-36s %10s %16s %10s %10s",
+            "Policy", "Avg wait", "Avg turnaround", "Makespan", "Finished"));
+        for (int i = 0; i < this.uses.size(); i++)
+        {
+            RunSummary summary = this.summaries[i];
+            writer.println(String.format(Locale.ROOT, "%-36s %10.3f %16.3f %10d %10s",
+                this.snapshot.useref.get(this.uses.get(i)), summary.averageWait(), summary.averageTurnaround(),
+                summary.makespan, summary.finished + "/" + summary.processes));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+//  Runs the process with the lowest priority value, ties going to the earliest arrival
+//  A new arrival with a lower priority value preempts the running process
+class PriorityScheduling implements SchedulingPolicy {
+    
+    ProcessTable table;
+    ReadyHeap queue;
+    
+    //  Arrivals so far, each process keeps its arrival order as the heap's tie key when it is requeued
+    long arrivals;
+    //  Arrival order of the process picked last, which is the running one
+    long current;
+    
+    public PriorityScheduling(Scheduler scheduler)
+    {
+        this.table = scheduler.table;
+        this.queue = new ReadyHeap(scheduler.capacity(), scheduler.keys());
+        this.arrivals = 0;
+        this.current = 0;
+    }
+    
+    @Override
+    public void onArrival(int process, long time)
+    {
+        this.queue.insert(process, this.table.priority[process], ++this.arrivals);
+    }
+    
+    @Override
+    public int pickNext(long time)
+    {
+        int process = this.queue.poll();
+        if (process >= 0)
+        {
+            this.current = this.queue.tie(process);
+        }
+        return process;
+    }
+    
+    @Override
+    public long slice(int process)
+    {
+        return UNLIMITED;
+    }
+    
+    //  Slices never expire
+    @Override
+    public boolean repeats()
+    {
+        return false;
+    }
+    
+    @Override
+    public void onTick(int process, long elapsed, long time)
+    {
+    }
+    
+    @Override
+    public boolean preempts(int running, long time)
+    {
+        return this.queue.size() > 0 && this.table.priority[this.queue.peek()] < this.table.priority[running];
+    }
+    
+    @Override
+    public void onPreempt(int process, long time)
+    {
+        this.queue.insert(process, this.table.priority[process], this.current);
+    }
+    
+    @Override
+    public void onExpire(int process, long time)
+    {
+        onPreempt(process, time);
+    }
+    
+    @Override
+    public void onComplete(int process, long time)
+    {
+    }
+    
+    //  A leaf of the heap, which is never the most urgent ready process unless it is the only one
+    @Override
+    public int steal(int running)
+    {
+        int size = this.queue.size();
+        if (size == 0)
+        {
+            return -1;
+        }
+        int process = this.queue.get(size - 1);
+        this.queue.remove(process);
+        return process;
+    }
+    
+    //  A migrated process queues behind the processes that arrived here before it
+    @Override
+    public void onMigrate(int process, SchedulingPolicy from, long time)
+    {
+        onArrival(process, time);
+    }
+    
+    @Override
+    public void save(SnapshotBuffer out)
+    {
+        out.putHeap(this.queue);
+        out.putLong(this.arrivals);
+        out.putLong(this.current);
+    }
+    
+    @Override
+    public void restore(SnapshotBuffer in)
+    {
+        in.getHeap(this.queue);
+        this.arrivals = in.getLong();
+        this.current = in.getLong();
+    }
+    
+    @Override
+    public int waiting()
+    {
+        return this.queue.size();
+    }
+    
+    @Override
+    public int waiting(int index)
+    {
+        return this.queue.get(index);
+    }
+}
@@ -0,0 +1,47 @@
+//  Process object with properties relating to individual processes, a view over one row of the process table
+class Process {
+    
+    final ProcessTable table;
+    final int id;
+    
+    public Process (ProcessTable table, int id)
+    {
+        this.table = table;
+        this.id = id;
+    }
+    
+    public String getName()
+    {
+        return this.table.getName(this.id);
+    }
+    
+    public long getArrival()
+    {
+        return this.table.arrival.get(this.id);
+    }
+    
+    public long getBurst()
+    {
+        return this.table.burst.get(this.id);
+    }
+    
+    public int getPriority()
+    {
+        return this.table.priority[this.id];
+    }
+    
+    public long getWait()
+    {
+        return this.table.wait.get(this.id);
+    }
+    
+    public long getStart()
+    {
+        return this.table.start.get(this.id);
+    }
+    
+    public long getTurnaround()
+    {
+        return this.table.turnaround.get(this.id);
+    }
+}
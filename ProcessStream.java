@@ -0,0 +1,409 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+//  Pipelined process source for input sorted by arrival time
+//  A parser thread fills a bounded look-ahead buffer of process batches while the simulation
+//  loads each process into the table only when simulated time reaches its arrival, and frees its
+//  row again once it finishes. Results of finished processes are spilled to a temporary file,
+//  so memory is bounded by the number of live processes rather than the size of the input.
+class ProcessStream {
+
+    static final int BATCH = 4096;
+    static final int BATCHES = 8;
+
+    //  Thrown when the input cannot be streamed and has to be read in memory instead
+    static class Unstreamable extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public Unstreamable(String reason)
+        {
+            super(reason);
+        }
+    }
+
+    //  Fixed-size block of parsed processes handed from the parser thread to the simulation
+    static class Batch {
+
+        byte[][] name = new byte[BATCH][];
+        long[] arrival = new long[BATCH];
+        long[] burst = new long[BATCH];
+        int[] priority = new int[BATCH];
+        int[] ordinal = new int[BATCH];
+        int count;
+        boolean last;
+        String failure;
+    }
+
+    Scheduler scheduler;
+    String filename;
+    BlockingQueue<Batch> full = new ArrayBlockingQueue<>(BATCHES);
+    BlockingQueue<Batch> empty = new ArrayBlockingQueue<>(BATCHES);
+    Thread parser;
+
+    //  Batch being consumed and the position of the next arrival in it
+    Batch current;
+    int index;
+
+    //  Input position of the process held by each table row
+    int[] ordinal = new int[16];
+
+    //  Spilled wait and turnaround in input order, mapped one region of processes at a time
+    //  Each takes 4 bytes, or 8 when runfor does not fit in 32 bits, as neither can exceed runfor
+    static final int REGION = 1 << 23;
+    int record;
+    FileChannel results;
+    MappedByteBuffer[] regions = new MappedByteBuffer[1];
+    int processes;
+
+    /**
+     * Creates a stream over an input file
+     * @param scheduler
+     *      Scheduler that receives the input's properties and whose table holds the live processes
+     * @param filename
+     *      Path of the input file
+     */
+    public ProcessStream(Scheduler scheduler, String filename)
+    {
+        this.scheduler = scheduler;
+        this.filename = filename;
+    }
+
+    /**
+     * Starts the parser thread and waits until the lines ahead of the first process have been read
+     * @throws Unstreamable
+     *      Exception if the input is not suited for streaming
+     */
+    public void start()
+    {
+        for (int i = 0; i < BATCHES; i++)
+        {
+            this.empty.add(new Batch());
+        }
+        try
+        {
+            Path spill = Files.createTempFile("processes", ".results");
+            this.results = FileChannel.open(spill, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        catch (IOException e)
+        {
+            throw new Unstreamable(e.toString());
+        }
+
+        this.parser = new Thread(this::parse, "process-stream");
+        this.parser.setDaemon(true);
+        this.parser.start();
+
+        this.current = take();
+        this.index = 0;
+
+        Scheduler scheduler = this.scheduler;
+        if (scheduler.processcount == null || scheduler.runfor == null
+            || !scheduler.useref.containsKey(scheduler.use)
+            || (scheduler.usesQuantum() && scheduler.quantum == null) || scheduler.getCpus() < 1)
+        {
+            throw new Unstreamable("Incomplete or invalid parameters ahead of the processes");
+        }
+        scheduler.stream = this;
+        this.record = scheduler.runfor > Integer.MAX_VALUE ? 16 : 8;
+    }
+
+    //  Returns the time of the next arrival, or Long.MAX_VALUE if none remain, waiting for the parser if needed
+    public long nextArrival()
+    {
+        while (this.index == this.current.count)
+        {
+            if (this.current.last)
+            {
+                return Long.MAX_VALUE;
+            }
+            this.empty.add(this.current);
+            this.current = take();
+            this.index = 0;
+        }
+        return this.current.arrival[this.index];
+    }
+
+    //  Loads the next arriving process into the table and returns its id
+    public int pollArrival()
+    {
+        Batch batch = this.current;
+        int id = this.scheduler.table.add(batch.name[this.index], batch.arrival[this.index], batch.burst[this.index],
+            batch.priority[this.index]);
+        if (id >= this.ordinal.length)
+        {
+            this.ordinal = Arrays.copyOf(this.ordinal, Math.max(id + 1, this.ordinal.length * 2));
+        }
+        this.ordinal[id] = batch.ordinal[this.index];
+        batch.name[this.index] = null;
+        this.index++;
+        return id;
+    }
+
+    //  Spills the results of a finished process and frees its table row
+    public void release(int id)
+    {
+        spill(id);
+        this.scheduler.table.release(id);
+    }
+
+    /**
+     * Waits for the parser to reach the end of the input, then spills the processes still in the table
+     * @throws Unstreamable
+     *      Exception if the rest of the input cannot be streamed or does not match "processcount"
+     */
+    public void finish()
+    {
+        while (!this.current.last)
+        {
+            this.empty.add(this.current);
+            this.current = take();
+        }
+        if (this.processes != this.scheduler.processcount)
+        {
+            throw new Unstreamable("Number of processes does not equal \"processcount\" parameter");
+        }
+
+        ProcessTable table = this.scheduler.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            if (table.name[id] != null)
+            {
+                spill(id);
+            }
+        }
+    }
+
+    /**
+     * Writes the footer, taking names from a second pass over the input and results from the spill file
+     * @param out
+     *      Text trace to write the footer to
+     * @param end
+     *      Time the simulation finished
+     * @throws IOException
+     *      Exception if the input cannot be read or the trace cannot be written
+     */
+    public void writeFooter(TraceWriter out, long end) throws IOException
+    {
+        out.finishedAt(end);
+
+        IOException[] failure = new IOException[1];
+        InputParser names = new InputParser(new Scheduler())
+        {
+            int ordinal;
+
+            @Override
+            void accept(int nameFrom, int nameTo, long arrival, long burst, int priority)
+            {
+                try
+                {
+                    MappedByteBuffer spilled = region(this.ordinal);
+                    int offset = (this.ordinal++ & (REGION - 1)) * record;
+                    if (record == 8)
+                    {
+                        out.result(copy(nameFrom, nameTo), spilled.getInt(offset), spilled.getInt(offset + 4));
+                    }
+                    else
+                    {
+                        out.result(copy(nameFrom, nameTo), spilled.getLong(offset), spilled.getLong(offset + 8));
+                    }
+                }
+                catch (IOException e)
+                {
+                    failure[0] = e;
+                }
+            }
+        };
+        names.read(this.filename);
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+        out.processors(this.scheduler);
+    }
+
+    //  Stops the parser thread and deletes the spill file
+    public void close()
+    {
+        if (this.parser != null)
+        {
+            this.parser.interrupt();
+        }
+        try
+        {
+            if (this.results != null)
+            {
+                this.results.close();
+            }
+        }
+        catch (IOException e)
+        {
+            //  The spill file is temporary, nothing to recover
+        }
+    }
+
+    void spill(int id)
+    {
+        ProcessTable table = this.scheduler.table;
+        int ordinal = this.ordinal[id];
+        int offset = (ordinal & (REGION - 1)) * this.record;
+        try
+        {
+            if (this.record == 8)
+            {
+                region(ordinal).putInt(offset, (int) table.wait.get(id)).putInt(offset + 4, (int) table.turnaround.get(id));
+            }
+            else
+            {
+                region(ordinal).putLong(offset, table.wait.get(id)).putLong(offset + 8, table.turnaround.get(id));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new Unstreamable(e.toString());
+        }
+    }
+
+    //  Returns the mapped region holding a process's results, processes that never arrived read as zeros
+    MappedByteBuffer region(int ordinal) throws IOException
+    {
+        int region = ordinal / REGION;
+        if (region >= this.regions.length)
+        {
+            this.regions = Arrays.copyOf(this.regions, Math.max(region + 1, this.regions.length * 2));
+        }
+        if (this.regions[region] == null)
+        {
+            this.regions[region] = this.results.map(FileChannel.MapMode.READ_WRITE, (long) region * REGION * this.record,
+                (long) REGION * this.record);
+        }
+        return this.regions[region];
+    }
+
+    //  Takes the next batch from the parser, failing if the parser gave up on the input
+    Batch take()
+    {
+        Batch batch;
+        try
+        {
+            batch = this.full.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new Unstreamable("Interrupted");
+        }
+        if (batch.failure != null)
+        {
+            throw new Unstreamable(batch.failure);
+        }
+        return batch;
+    }
+
+    //  Body of the parser thread
+    void parse()
+    {
+        Producer producer = new Producer(this.scheduler);
+        try
+        {
+            producer.batch = this.empty.take();
+            producer.read(this.filename);
+            this.processes = producer.ordinal;
+            producer.batch.last = true;
+            this.full.put(producer.batch);
+        }
+        catch (InterruptedException e)
+        {
+            //  Simulation gave up on the stream
+        }
+        catch (Unstreamable | IOException | NumberFormatException | IndexOutOfBoundsException e)
+        {
+            Batch batch = producer.batch != null ? producer.batch : new Batch();
+            batch.failure = e.toString();
+            try
+            {
+                this.full.put(batch);
+            }
+            catch (InterruptedException interrupted)
+            {
+                //  Simulation gave up on the stream
+            }
+        }
+    }
+
+    //  Parser that fills batches instead of the process table
+    class Producer extends InputParser {
+
+        Batch batch;
+        int ordinal;
+        long latest;
+
+        public Producer(Scheduler scheduler)
+        {
+            super(scheduler);
+        }
+
+        @Override
+        void accept(int nameFrom, int nameTo, long arrival, long burst, int priority)
+        {
+            int ordinal = this.ordinal++;
+            //  Processes with a negative arrival time never arrive, only their footer line is needed
+            if (arrival < 0)
+            {
+                return;
+            }
+            if (arrival < this.latest)
+            {
+                throw new Unstreamable("Process arrivals are not in order");
+            }
+            this.latest = arrival;
+
+            Batch batch = this.batch;
+            batch.name[batch.count] = copy(nameFrom, nameTo);
+            batch.arrival[batch.count] = arrival;
+            batch.burst[batch.count] = burst;
+            batch.priority[batch.count] = priority;
+            batch.ordinal[batch.count] = ordinal;
+            if (++batch.count == BATCH)
+            {
+                try
+                {
+                    full.put(batch);
+                    this.batch = empty.take();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new Unstreamable("Interrupted");
+                }
+                this.batch.count = 0;
+                this.batch.last = false;
+                this.batch.failure = null;
+            }
+        }
+
+        @Override
+        void directive()
+        {
+            if (this.ordinal > 0)
+            {
+                throw new Unstreamable("Parameter line after the first process");
+            }
+        }
+
+        @Override
+        void message(String text)
+        {
+            throw new Unstreamable(text);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+//  Column store with the properties of every process, indexed by process id
+class ProcessTable {
+    
+    //  UTF-8 encoded process names, written to the trace as they are
+    byte[][] name;
+    //  Times and bursts take 64 bits, but only once a value does not fit in 32
+    LongColumn arrival;
+    LongColumn burst;
+    int[] priority;
+    LongColumn wait;
+    LongColumn ready;
+    LongColumn start;
+    LongColumn turnaround;
+    int size;
+    
+    //  Ids of released rows, reused before the table grows
+    int[] free;
+    int freeCount;
+    
+    public ProcessTable(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        this.name = new byte[capacity][];
+        this.arrival = new LongColumn(capacity);
+        this.burst = new LongColumn(capacity);
+        this.priority = new int[capacity];
+        this.wait = new LongColumn(capacity);
+        this.ready = new LongColumn(capacity);
+        this.start = new LongColumn(capacity);
+        this.turnaround = new LongColumn(capacity);
+        this.size = 0;
+        this.free = new int[0];
+        this.freeCount = 0;
+    }
+    
+    /**
+     * Appends a process to the table
+     * @param name
+     *      UTF-8 encoded process name
+     * @param arrival
+     *      Arrival time
+     * @param burst
+     *      Total burst time
+     * @param priority
+     *      Scheduling priority, lower values run first
+     * @return
+     *      Id of the new process, equal to its position in the input unless rows have been released
+     */
+    public int add(byte[] name, long arrival, long burst, int priority)
+    {
+        int id;
+        if (this.freeCount > 0)
+        {
+            id = this.free[--this.freeCount];
+        }
+        else
+        {
+            if (this.size == this.name.length)
+            {
+                grow(this.size * 2);
+            }
+            id = this.size++;
+        }
+        this.name[id] = name;
+        this.arrival.set(id, arrival);
+        this.burst.set(id, burst);
+        this.priority[id] = priority;
+        this.wait.set(id, 0);
+        this.ready.set(id, 0);
+        this.start.set(id, 0);
+        this.turnaround.set(id, 0);
+        return id;
+    }
+    
+    //  Makes the row of a process that is no longer needed available to the next add
+    public void release(int id)
+    {
+        if (this.freeCount == this.free.length)
+        {
+            this.free = Arrays.copyOf(this.free, Math.max(16, this.free.length * 2));
+        }
+        this.name[id] = null;
+        this.free[this.freeCount++] = id;
+    }
+    
+    //  Empties the table for another workload, keeping its columns at the size they have grown to
+    public void clear()
+    {
+        this.size = 0;
+        this.freeCount = 0;
+    }
+    
+    //  Returns a table for another simulation of the same processes
+    //  Columns a simulation only reads (names, arrivals, priorities) are shared with this table,
+    //  the ones it writes start out private, so a fork costs one copy of the bursts.
+    //  No rows may be added to or released from either table afterwards.
+    public ProcessTable fork()
+    {
+        ProcessTable table = new ProcessTable(1);
+        int capacity = this.name.length;
+        table.name = this.name;
+        table.arrival = this.arrival;
+        table.priority = this.priority;
+        table.burst = this.burst.copyOf(capacity);
+        table.wait = new LongColumn(capacity);
+        table.ready = new LongColumn(capacity);
+        table.start = new LongColumn(capacity);
+        table.turnaround = new LongColumn(capacity);
+        table.size = this.size;
+        return table;
+    }
+    
+    //  Returns true if an arrival or burst needs more than 32 bits
+    public boolean isWide()
+    {
+        return this.arrival.isWide() || this.burst.isWide();
+    }
+    
+    public String getName(int id)
+    {
+        return new String(this.name[id], StandardCharsets.UTF_8);
+    }
+    
+    void grow(int capacity)
+    {
+        this.name = Arrays.copyOf(this.name, capacity);
+        this.arrival.grow(capacity);
+        this.burst.grow(capacity);
+        this.priority = Arrays.copyOf(this.priority, capacity);
+        this.wait.grow(capacity);
+        this.ready.grow(capacity);
+        this.start.grow(capacity);
+        this.turnaround.grow(capacity);
+    }
+}
@@ -0,0 +1,43 @@
+//  Number of processes on each processor, ready or running, for placing arrivals and picking steal victims
+//  The least and most loaded processors sit at the roots of two heaps, so finding either is O(1)
+//  and a change of load is O(log N) in the number of processors, ties going to the lowest processor
+class ProcessorLoad {
+
+    int[] load;
+    ReadyHeap least;
+    ReadyHeap most;
+
+    public ProcessorLoad(int cpus)
+    {
+        this.load = new int[cpus];
+        this.least = new ReadyHeap(cpus);
+        this.most = new ReadyHeap(cpus);
+        for (int cpu = 0; cpu < cpus; cpu++)
+        {
+            this.least.insert(cpu, 0, cpu);
+            this.most.insert(cpu, 0, cpu);
+        }
+    }
+
+    public int get(int cpu)
+    {
+        return this.load[cpu];
+    }
+
+    public int least()
+    {
+        return this.least.peek();
+    }
+
+    public int most()
+    {
+        return this.most.peek();
+    }
+
+    public void add(int cpu, int delta)
+    {
+        this.load[cpu] += delta;
+        this.least.update(cpu, this.load[cpu], cpu);
+        this.most.update(cpu, -this.load[cpu], cpu);
+    }
+}
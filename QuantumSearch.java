@@ -0,0 +1,327 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+//  Searches for the quantum that minimizes an objective on one parsed input
+//  Each round simulates a handful of quanta spread over the range still in play, in parallel on forks
+//  of the input, and narrows the range to the neighbours of the best one, as a ternary search does
+//  with two. Every evaluation is kept under the hash of the workload, in memory and in a cache file,
+//  so tuning the same workload again simulates nothing it has simulated before.
+class QuantumSearch {
+
+    //  Objectives that can be minimized
+    static final List<String> OBJECTIVES = Arrays.asList("wait", "p99", "switches");
+
+    //  Results of one quantum
+    static class Evaluation {
+
+        int quantum;
+        double averageWait;
+        long p99Turnaround;
+        long contextSwitches;
+
+        double get(String objective)
+        {
+            switch (objective)
+            {
+                case "p99":
+                    return this.p99Turnaround;
+                case "switches":
+                    return this.contextSwitches;
+                default:
+                    return this.averageWait;
+            }
+        }
+    }
+
+    Scheduler snapshot;
+    String objective;
+    long hash;
+    //  Evaluations of this workload by quantum, the ones read from the cache file included
+    Map<Integer, Evaluation> evaluations;
+    int cached;
+    List<Evaluation> added;
+
+    /**
+     * Prepares a search on a validated input
+     * @param snapshot
+     *      Scheduler of a policy that uses a quantum, left unchanged by the search
+     * @param objective
+     *      "wait" for average wait, "p99" for 99th percentile turnaround or "switches" for context switches
+     */
+    public QuantumSearch(Scheduler snapshot, String objective)
+    {
+        this.snapshot = snapshot;
+        this.objective = objective;
+        this.hash = hash(snapshot);
+        this.evaluations = new ConcurrentHashMap<>();
+        this.added = new ArrayList<>();
+    }
+
+    //  Hashes everything but the quantum that a simulation's results depend on
+    static long hash(Scheduler scheduler)
+    {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + scheduler.use.hashCode();
+        hash = 31 * hash + scheduler.runfor;
+        hash = 31 * hash + scheduler.getCpus();
+        ProcessTable table = scheduler.table;
+        hash = 31 * hash + table.size;
+        for (int id = 0; id < table.size; id++)
+        {
+            hash = 31 * hash + table.arrival.get(id);
+            hash = 31 * hash + table.burst.get(id);
+            hash = 31 * hash + table.priority[id];
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the evaluations of this workload from a cache file, if there is one
+     * Each line holds a workload hash in hex, a quantum, the average wait, the 99th percentile
+     * turnaround and the context switches. Lines of other workloads are skipped, unreadable ones too.
+     * @param filename
+     *      Path of the cache file
+     * @throws IOException
+     *      Exception if the file exists but cannot be read
+     */
+    public void load(String filename) throws IOException
+    {
+        Path path = Paths.get(filename);
+        if (!Files.exists(path))
+        {
+            return;
+        }
+        String hash = Long.toHexString(this.hash);
+        for (String line : Files.readAllLines(path))
+        {
+            String[] part = line.trim().split(" ");
+            if (part.length != 5 || !part[0].equals(hash))
+            {
+                continue;
+            }
+            try
+            {
+                Evaluation evaluation = new Evaluation();
+                evaluation.quantum = Integer.parseInt(part[1]);
+                evaluation.averageWait = Double.parseDouble(part[2]);
+                evaluation.p99Turnaround = Long.parseLong(part[3]);
+                evaluation.contextSwitches = Long.parseLong(part[4]);
+                this.evaluations.put(evaluation.quantum, evaluation);
+            }
+            catch (NumberFormatException e)
+            {
+                //  Left for the next evaluation to replace
+            }
+        }
+        this.cached = this.evaluations.size();
+    }
+
+    /**
+     * Appends the evaluations this search added to the cache file
+     * @param filename
+     *      Path of the cache file, created if it does not exist
+     * @throws IOException
+     *      Exception if the file cannot be written
+     */
+    public void save(String filename) throws IOException
+    {
+        if (this.added.isEmpty())
+        {
+            return;
+        }
+        String hash = Long.toHexString(this.hash);
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+        {
+            for (Evaluation evaluation : this.added)
+            {
+                writer.write(hash + " " + evaluation.quantum + " " + evaluation.averageWait + " "
+                    + evaluation.p99Turnaround + " " + evaluation.contextSwitches + "\n");
+            }
+        }
+    }
+
+    /**
+     * Searches the quanta from 1 to the longest burst, past which a process never loses the processor
+     * The objective is assumed to change with the quantum without too many local minima, as it does
+     * for most workloads, the search is otherwise a good guess rather than the best quantum
+     * @param pool
+     *      Pool the evaluations of a round run on, left running for others to share
+     * @return
+     *      Evaluation of the best quantum, the smallest one of those that tie
+     */
+    public Evaluation search(ForkJoinPool pool)
+    {
+        //  Index the arrivals once, every fork shares the index
+        this.snapshot.indexArrivals();
+        int points = Math.max(pool.getParallelism(), 2);
+        int lo = 1;
+        int hi = 1;
+        ProcessTable table = this.snapshot.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            hi = (int) Math.max(hi, Math.min(table.burst.get(id), Integer.MAX_VALUE));
+        }
+
+        //  Keep the neighbours of the best of a few quanta spread over the range
+        while (hi - lo > points + 1)
+        {
+            int[] quanta = new int[points];
+            for (int i = 0; i < points; i++)
+            {
+                quanta[i] = lo + (int) ((long) (hi - lo) * (i + 1) / (points + 1));
+            }
+            int best = best(quanta, pool);
+            int lower = best > 0 ? quanta[best - 1] : lo;
+            int upper = best < points - 1 ? quanta[best + 1] : hi;
+            lo = lower;
+            hi = upper;
+        }
+
+        //  Then try every quantum left
+        int[] quanta = new int[hi - lo + 1];
+        for (int i = 0; i < quanta.length; i++)
+        {
+            quanta[i] = lo + i;
+        }
+        return this.evaluations.get(quanta[best(quanta, pool)]);
+    }
+
+    //  Evaluates the quanta that have not been yet and returns the position of the best one
+    int best(int[] quanta, ForkJoinPool pool)
+    {
+        List<EvaluationTask> tasks = new ArrayList<>();
+        for (int quantum : quanta)
+        {
+            if (!this.evaluations.containsKey(quantum))
+            {
+                tasks.add(new EvaluationTask(quantum));
+            }
+        }
+        if (!tasks.isEmpty())
+        {
+            pool.invoke(new RecursiveAction()
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute()
+                {
+                    invokeAll(tasks);
+                }
+            });
+            for (EvaluationTask task : tasks)
+            {
+                this.evaluations.put(task.evaluation.quantum, task.evaluation);
+                this.added.add(task.evaluation);
+            }
+        }
+
+        int best = 0;
+        for (int i = 1; i < quanta.length; i++)
+        {
+            if (this.evaluations.get(quanta[i]).get(this.objective)
+                < this.evaluations.get(quanta[best]).get(this.objective))
+            {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    //  Simulates one quantum on its own fork of the snapshot
+    class EvaluationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        int quantum;
+        Evaluation evaluation;
+
+        public EvaluationTask(int quantum)
+        {
+            this.quantum = quantum;
+        }
+
+        @Override
+        protected void compute()
+        {
+            Scheduler scheduler = snapshot.fork();
+            scheduler.quantum = this.quantum;
+            scheduler.metrics = new Metrics();
+            try
+            {
+                Schedule.simulate(scheduler, new NullTrace());
+            }
+            catch (IOException e)
+            {
+                //  Nothing is written
+                throw new UncheckedIOException(e);
+            }
+            Evaluation evaluation = new Evaluation();
+            evaluation.quantum = this.quantum;
+            evaluation.averageWait = RunSummary.of(scheduler).averageWait();
+            evaluation.p99Turnaround = scheduler.metrics.turnaround.getPercentile(99);
+            evaluation.contextSwitches = scheduler.metrics.contextSwitches;
+            this.evaluation = evaluation;
+        }
+    }
+
+    /**
+     * Writes every quantum evaluated for this workload and the best one
+     * @param filename
+     *      Path of the output file
+     * @param best
+     *      Evaluation the search returned
+     * @throws IOException
+     *      Exception if the output file cannot be written
+     */
+    public void write(String filename, Evaluation best) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(filename))))
+        {
+            writer.println(this.snapshot.processcount + " processes");
+            writer.println("Tuning " + this.snapshot.usename + " for " + name(this.objective));
+            writer.println("Evaluated " + this.evaluations.size() + " quanta, " + this.cached + " of them cached");
+            writer.println();
+
+            writer.println(String.format(Locale.ROOT, "%8s %10s %16s %18s", "Quantum", "Avg wait", "p99 turnaround",
+                "Context switches"));
+            for (Evaluation evaluation : new TreeMap<>(this.evaluations).values())
+            {
+                writer.println(String.format(Locale.ROOT, "%8d %10.3f %16d %18d", evaluation.quantum,
+                    evaluation.averageWait, evaluation.p99Turnaround, evaluation.contextSwitches));
+            }
+            writer.println();
+            writer.println("Best quantum " + best.quantum);
+        }
+    }
+
+    static String name(String objective)
+    {
+        switch (objective)
+        {
+            case "p99":
+                return "99th percentile turnaround";
+            case "switches":
+                return "context switches";
+            default:
+                return "average wait";
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+
+//  Indexed binary min-heap of process ids, ordered by a primary key and a tie-breaking secondary key
+class ReadyHeap {
+
+    //  Heap position and keys of every id, indexed by id
+    //  Heaps that never hold the same id at once, such as the ready queues of several processors,
+    //  can share one Keys so the id-indexed columns exist once rather than once per heap
+    static class Keys {
+
+        int[] position;
+        LongColumn primary;
+        LongColumn secondary;
+
+        public Keys(int capacity)
+        {
+            capacity = Math.max(capacity, 1);
+            this.position = new int[capacity];
+            this.primary = new LongColumn(capacity);
+            this.secondary = new LongColumn(capacity);
+            Arrays.fill(this.position, -1);
+        }
+
+        void grow(int capacity)
+        {
+            int length = this.position.length;
+            this.position = Arrays.copyOf(this.position, capacity);
+            this.primary.grow(capacity);
+            this.secondary.grow(capacity);
+            Arrays.fill(this.position, length, capacity, -1);
+        }
+    }
+
+    int[] heap;
+    Keys keys;
+    int size;
+
+    /**
+     * Creates an empty heap
+     * @param capacity
+     *      Initial number of distinct process ids, the heap grows when larger ids are inserted
+     */
+    public ReadyHeap(int capacity)
+    {
+        this(capacity, new Keys(capacity));
+    }
+
+    /**
+     * Creates an empty heap over keys that other heaps may share
+     * @param capacity
+     *      Initial number of ids held at once, the heap grows when more are inserted
+     * @param keys
+     *      Keys of the ids, grown when larger ids are inserted
+     */
+    public ReadyHeap(int capacity, Keys keys)
+    {
+        this.heap = new int[Math.max(capacity, 1)];
+        this.keys = keys;
+        this.size = 0;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean contains(int id)
+    {
+        return this.keys.position[id] >= 0 && this.keys.position[id] < this.size
+            && this.heap[this.keys.position[id]] == id;
+    }
+
+    //  Returns the id stored at the given heap slot, for walking the heap in no particular order
+    public int get(int index)
+    {
+        return this.heap[index];
+    }
+
+    //  Returns the secondary key an id was last inserted with, which stays readable after it leaves the heap
+    public long tie(int id)
+    {
+        return this.keys.secondary.get(id);
+    }
+
+    //  Returns the id with the smallest key, or -1 if the heap is empty
+    public int peek()
+    {
+        return this.size > 0 ? this.heap[0] : -1;
+    }
+
+    /**
+     * Adds a process id to the heap in O(log N)
+     * @param id
+     *      Process id, must not already be in the heap
+     * @param key
+     *      Primary key, smallest is extracted first
+     * @param tie
+     *      Secondary key, compared only when primary keys are equal
+     */
+    public void insert(int id, long key, long tie)
+    {
+        append(id, key, tie);
+        siftUp(this.size - 1);
+    }
+
+    //  Puts an id in the next free slot without ordering it, for rebuilding a heap from a copy saved in slot order
+    public void append(int id, long key, long tie)
+    {
+        Keys keys = this.keys;
+        if (id >= keys.position.length)
+        {
+            keys.grow(Math.max(id + 1, keys.position.length * 2));
+        }
+        if (this.size == this.heap.length)
+        {
+            this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+        }
+        keys.primary.set(id, key);
+        keys.secondary.set(id, tie);
+        this.heap[this.size] = id;
+        keys.position[id] = this.size++;
+    }
+
+    //  Removes and returns the id with the smallest key in O(log N), or -1 if the heap is empty
+    public int poll()
+    {
+        if (this.size == 0)
+        {
+            return -1;
+        }
+        int id = this.heap[0];
+        this.keys.position[id] = -1;
+        if (--this.size > 0)
+        {
+            this.heap[0] = this.heap[this.size];
+            this.keys.position[this.heap[0]] = 0;
+            siftDown(0);
+        }
+        return id;
+    }
+
+    /**
+     * Lowers the key of an id already in the heap in O(log N)
+     * @param id
+     *      Process id currently in the heap
+     * @param key
+     *      New primary key, must not be greater than the current one
+     * @param tie
+     *      New secondary key, must not order the id after its current key
+     */
+    public void decreaseKey(int id, long key, long tie)
+    {
+        this.keys.primary.set(id, key);
+        this.keys.secondary.set(id, tie);
+        siftUp(this.keys.position[id]);
+    }
+
+    /**
+     * Changes the key of an id already in the heap in either direction in O(log N)
+     * @param id
+     *      Id currently in the heap
+     * @param key
+     *      New primary key
+     * @param tie
+     *      New secondary key
+     */
+    public void update(int id, long key, long tie)
+    {
+        this.keys.primary.set(id, key);
+        this.keys.secondary.set(id, tie);
+        siftUp(this.keys.position[id]);
+        siftDown(this.keys.position[id]);
+    }
+
+    //  Removes an id from anywhere in the heap in O(log N)
+    public void remove(int id)
+    {
+        int index = this.keys.position[id];
+        this.keys.position[id] = -1;
+        if (--this.size > index)
+        {
+            int moved = this.heap[this.size];
+            this.heap[index] = moved;
+            this.keys.position[moved] = index;
+            siftUp(index);
+            siftDown(this.keys.position[moved]);
+        }
+    }
+
+    boolean less(int a, int b)
+    {
+        Keys keys = this.keys;
+        long primaryA = keys.primary.get(a);
+        long primaryB = keys.primary.get(b);
+        if (primaryA != primaryB)
+        {
+            return primaryA < primaryB;
+        }
+        return keys.secondary.get(a) < keys.secondary.get(b);
+    }
+
+    void siftUp(int index)
+    {
+        int[] position = this.keys.position;
+        int id = this.heap[index];
+        while (index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+            if (!less(id, this.heap[parent]))
+            {
+                break;
+            }
+            this.heap[index] = this.heap[parent];
+            position[this.heap[index]] = index;
+            index = parent;
+        }
+        this.heap[index] = id;
+        position[id] = index;
+    }
+
+    void siftDown(int index)
+    {
+        int[] position = this.keys.position;
+        int id = this.heap[index];
+        int half = this.size >>> 1;
+        while (index < half)
+        {
+            int child = 2 * index + 1;
+            if (child + 1 < this.size && less(this.heap[child + 1], this.heap[child]))
+            {
+                child++;
+            }
+            if (!less(this.heap[child], id))
+            {
+                break;
+            }
+            this.heap[index] = this.heap[child];
+            position[this.heap[index]] = index;
+            index = child;
+        }
+        this.heap[index] = id;
+        position[id] = index;
+    }
+}
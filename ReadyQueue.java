@@ -0,0 +1,81 @@
+//  First-in first-out ring buffer of process ids
+class ReadyQueue {
+    
+    int[] ring;
+    int head;
+    int size;
+    
+    /**
+     * Creates an empty queue
+     * @param capacity
+     *      Initial number of ids held at once, the queue grows past it when needed
+     */
+    public ReadyQueue(int capacity)
+    {
+        this.ring = new int[Math.max(capacity, 1)];
+        this.head = 0;
+        this.size = 0;
+    }
+    
+    public int size()
+    {
+        return this.size;
+    }
+    
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+    
+    //  Returns the id at the given distance from the head of the queue
+    public int get(int index)
+    {
+        return this.ring[(this.head + index) % this.ring.length];
+    }
+    
+    public void add(int id)
+    {
+        if (this.size == this.ring.length)
+        {
+            grow();
+        }
+        this.ring[(this.head + this.size) % this.ring.length] = id;
+        this.size++;
+    }
+    
+    //  Removes and returns the id at the head of the queue, or -1 if the queue is empty
+    public int poll()
+    {
+        if (this.size == 0)
+        {
+            return -1;
+        }
+        int id = this.ring[this.head];
+        this.head = (this.head + 1) % this.ring.length;
+        this.size--;
+        return id;
+    }
+    
+    //  Removes and returns the id at the tail of the queue, the one that would run last, or -1 if the queue is empty
+    public int pollLast()
+    {
+        if (this.size == 0)
+        {
+            return -1;
+        }
+        this.size--;
+        return this.ring[(this.head + this.size) % this.ring.length];
+    }
+    
+    //  Doubles the ring, moving the queued ids to the front in order
+    void grow()
+    {
+        int[] ring = new int[this.ring.length * 2];
+        for (int i = 0; i < this.size; i++)
+        {
+            ring[i] = get(i);
+        }
+        this.ring = ring;
+        this.head = 0;
+    }
+}
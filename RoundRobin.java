@@ -0,0 +1,18 @@
+//  Runs processes in arrival order for at most one quantum at a time,
+//  requeueing a process behind the others when its quantum is used up
+class RoundRobin extends FirstComeFirstServed {
+    
+    int quantum;
+    
+    public RoundRobin(Scheduler scheduler)
+    {
+        super(scheduler);
+        this.quantum = Math.max(scheduler.quantum, 1);
+    }
+    
+    @Override
+    public long slice(int process)
+    {
+        return this.quantum;
+    }
+}
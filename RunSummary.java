@@ -0,0 +1,67 @@
+//  Aggregate results of one simulation run
+class RunSummary {
+    
+    int processes;
+    int finished;
+    Total wait = new Total();
+    Total turnaround = new Total();
+    long makespan;
+    
+    /**
+     * Totals the results of a finished simulation
+     * @param scheduler
+     *      Scheduler object after its simulation has run
+     * @return
+     *      Summary of wait, turnaround and the time the last process finished
+     */
+    public static RunSummary of(Scheduler scheduler)
+    {
+        RunSummary summary = new RunSummary();
+        ProcessTable table = scheduler.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            summary.processes++;
+            summary.wait.add(table.wait.get(id));
+            //  Every process that finishes runs for at least one tick
+            if (table.turnaround.get(id) > 0)
+            {
+                summary.finished++;
+                summary.turnaround.add(table.turnaround.get(id));
+                summary.makespan = Math.max(summary.makespan, table.start.get(id) + table.turnaround.get(id));
+            }
+        }
+        return summary;
+    }
+    
+    //  Average wait over every process
+    public double averageWait()
+    {
+        return this.processes > 0 ? this.wait.doubleValue() / this.processes : 0;
+    }
+    
+    //  Average turnaround over the processes that finished
+    public double averageTurnaround()
+    {
+        return this.finished > 0 ? this.turnaround.doubleValue() / this.finished : 0;
+    }
+    
+    //  Sum of 64-bit values kept in 128 bits, so the total of a run's waits or turnarounds never wraps
+    static class Total {
+        
+        long low;
+        long high;
+        
+        public void add(long value)
+        {
+            long sum = this.low + value;
+            //  Carry out of the low word, taken as unsigned, plus the sign of the value
+            this.high += (value >> 63) + (Long.compareUnsigned(sum, this.low) < 0 ? 1 : 0);
+            this.low = sum;
+        }
+        
+        public double doubleValue()
+        {
+            return this.high * 0x1p64 + (this.low >>> 1) * 2.0 + (this.low & 1);
+        }
+    }
+}
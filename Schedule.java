@@ -1,17 +1,11 @@
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 
 /*
@@ -19,7 +13,7 @@ import java.util.Map;
  *  [1] Open command line
  *  [2] Set cwd to directory containing this file
  *  [3] Enter "javac Schedule.java"
- *  [4] Verify three class files were generated
+ *  [4] Verify the class files were generated
  *  [5] Place "processes.in" input file in the cwd
  *  [6] Enter "java Schedule"
  *  [7] Open the generated "processes.out" to view output
@@ -31,17 +25,117 @@ public class Schedule {
     //  Static I/O Filenames
     static String inputFilename = "processes.in";
     static String outputFilename = "processes.out";
+    static String binaryFilename = "processes.bin";
+    static String metricsFilename = "metrics.json";
+    static String checkpointFilename = "processes.ckpt";
+    static String snapshotFilename = "processes.snap";
+    static String tuneFilename = "processes.tune";
+    
+    //  Pool every comparison and quantum search of this process runs on, including those of the service.
+    //  Its workers are daemon threads and are only started when first needed
+    static ForkJoinPool pool = new ForkJoinPool();
     
     public static void main(String[] args)
     {
         Scheduler scheduler = null;
+        String trace = null;
+        boolean stream = false;
+        boolean compare = false;
+        Metrics metrics = null;
+        Long checkpoint = null;
+        boolean resume = false;
+        boolean incremental = false;
+        List<String> batch = null;
+        String sweep = null;
+        
+        //  Read command line options
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            switch (arg)
+            {
+                case "--text":
+                    trace = "text";
+                    break;
+                case "--binary":
+                    trace = "binary";
+                    break;
+                case "--compact":
+                    trace = "compact";
+                    break;
+                case "--stream":
+                    stream = true;
+                    break;
+                case "--compare":
+                    compare = true;
+                    break;
+                case "--metrics":
+                    metrics = new Metrics();
+                    break;
+                case "--checkpoint":
+                    //  Seconds between snapshots, a minute unless given
+                    checkpoint = 60L;
+                    if (i + 1 < args.length && args[i + 1].matches("[0-9]+"))
+                    {
+                        checkpoint = Long.valueOf(args[++i]);
+                    }
+                    break;
+                case "--resume":
+                    resume = true;
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--batch":
+                    batch = new ArrayList<>();
+                    while (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    {
+                        batch.add(args[++i]);
+                    }
+                    break;
+                case "--sweep":
+                    //  Accepts "quantum 1..64" as one argument or as two
+                    sweep = i + 1 < args.length ? args[++i] : "";
+                    if (!sweep.contains(" ") && i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    {
+                        sweep += " " + args[++i];
+                    }
+                    break;
+                case "--render":
+                    render();
+                    return;
+                case "--tune":
+                    //  Objective to minimize, the average wait unless given
+                    tune(i + 1 < args.length && !args[i + 1].startsWith("--") ? args[i + 1] : "wait");
+                    return;
+                case "--serve":
+                    //  A loopback port, "-" for stdin and stdout, or a Unix-domain socket path
+                    serve(i + 1 < args.length && !args[i + 1].startsWith("--") ? args[i + 1] : "7077");
+                    return;
+                default:
+                    System.out.println("Error: Unknown option " + arg);
+                    return;
+            }
+        }
+        
+        //  Run many inputs or parameter values at once, a sweep alone applies to the usual input file
+        if (batch != null || sweep != null)
+        {
+            batch(batch != null ? batch : Arrays.asList(inputFilename), sweep);
+            return;
+        }
+        
+        //  Simulate while the input is still being parsed, falls back to reading it in memory
+        if (stream && !compare && checkpoint == null && !resume && !incremental && stream(trace, metrics != null))
+        {
+            return;
+        }
         
         //  Read and parse input
+        long parsing = System.nanoTime();
         try
         {
-            List<String> input = readInput();
-            scheduler = parseInput(input);
-            
+            scheduler = InputParser.parse(inputFilename);
         }
         catch (IOException e)
         {
@@ -54,21 +148,378 @@ public class Schedule {
 //            System.out.println(e);
         }
         
-        //  Switch cases for process types
-        switch (scheduler.use)
+        //  Command line choice of trace format overrides the input file
+        if (trace != null)
         {
-            case "fcfs":
-                fcfs(scheduler);
-                break;
-            case "rr":
-                rr(scheduler);
-                break;
-            case "sjf":
-                sjf(scheduler);
-                break;
-            default:
-                break;
-        }                
+            scheduler.trace = trace;
+        }
+        
+        //  Record run statistics, written next to the output file
+        if (metrics != null)
+        {
+            metrics.parseNanos = System.nanoTime() - parsing;
+            metrics.use = scheduler.use;
+            scheduler.metrics = metrics;
+        }
+        
+        //  Compare every policy on this one parse of the input
+        if (compare && scheduler.useref.containsKey(scheduler.use))
+        {
+            scheduler.use = "all";
+        }
+        
+        //  Snapshot the engine now and then, or continue a run from its last snapshot
+        //  An incremental run instead keeps snapshots for the next run to start from
+        if (incremental && checkpoint == null && !resume && scheduler.useref.containsKey(scheduler.use))
+        {
+            scheduler.checkpoint = new SnapshotLog(snapshotFilename);
+            scheduler.checkpoint.prepare(scheduler);
+            try
+            {
+                scheduler.checkpoint.load(scheduler);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error: " + snapshotFilename + " could not be read.");
+                return;
+            }
+        }
+        else if ((checkpoint != null || resume) && scheduler.useref.containsKey(scheduler.use))
+        {
+            scheduler.checkpoint = new Checkpoint(checkpointFilename, checkpoint != null ? checkpoint : 60);
+            scheduler.checkpoint.prepare(scheduler);
+            try
+            {
+                String error = resume ? scheduler.checkpoint.load(scheduler) : null;
+                if (error != null)
+                {
+                    System.out.println(error);
+                    return;
+                }
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error: " + checkpointFilename + " could not be read.");
+                return;
+            }
+        }
+        run(scheduler);
+    }
+    
+    //  Simulates a validated Scheduler and writes the output file, or the comparison table for "use all"
+    public static void run(Scheduler scheduler)
+    {
+        if (scheduler.use.equals("all"))
+        {
+            compare(scheduler);
+            return;
+        }
+        
+        //  Stream output to file while the selected algorithm runs
+        if (scheduler.useref.containsKey(scheduler.use))
+        {
+            boolean binary = scheduler.trace.equals("binary");
+            String filename = binary ? binaryFilename : outputFilename;
+            long writing = System.nanoTime();
+            long simulating = writing;
+            long simulated = writing;
+            Snapshots checkpoint = scheduler.checkpoint;
+            try (TraceSink out = checkpoint != null ? checkpoint.open(scheduler, filename, binary)
+                : openTrace(filename, binary, -1))
+            {
+                if (checkpoint == null)
+                {
+                    out.writeHeader(scheduler);
+                }
+                simulating = System.nanoTime();
+                simulate(scheduler, out);
+                simulated = System.nanoTime();
+                out.writeFooter(scheduler);
+                if (checkpoint != null)
+                {
+                    checkpoint.finish(out);
+                }
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error: Unable to create " + filename);
+                System.out.println(e);
+            }
+            
+            if (scheduler.metrics != null)
+            {
+                writeMetrics(scheduler.metrics, simulated - simulating, System.nanoTime() - simulated + simulating - writing);
+            }
+        }
+    }
+    
+    //  Creates a trace file, or continues one from an offset when it is not negative
+    static TraceSink openTrace(String filename, boolean binary, long offset) throws IOException
+    {
+        if (offset >= 0)
+        {
+            return binary ? new BinaryTraceWriter(filename, offset) : new TraceWriter(filename, offset);
+        }
+        return binary ? new BinaryTraceWriter(filename) : new TraceWriter(filename);
+    }
+    
+    //  Completes the phase times of a run, then emits its statistics as a JFR event and a JSON file
+    public static void writeMetrics(Metrics metrics, long simulateNanos, long writeNanos)
+    {
+        metrics.simulateNanos = simulateNanos;
+        metrics.writeNanos = writeNanos;
+        metrics.commit();
+        try
+        {
+            metrics.write(metricsFilename);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Unable to create " + metricsFilename);
+            System.out.println(e);
+        }
+    }
+    
+    /**
+     * Runs the simulation on processes streamed from the input file as they are parsed
+     * @param trace
+     *      Trace format chosen on the command line, or null to use the input file's
+     * @param measure
+     *      True to record run statistics, parsing overlaps the simulation so it has no phase of its own
+     * @return
+     *      True if the run completed, false if the input has to be read in memory instead
+     */
+    public static boolean stream(String trace, boolean measure)
+    {
+        Scheduler scheduler = new Scheduler();
+        ProcessStream stream = new ProcessStream(scheduler, inputFilename);
+        try
+        {
+            stream.start();
+            if (trace != null)
+            {
+                scheduler.trace = trace;
+            }
+            if (scheduler.trace.equals("binary"))
+            {
+                throw new ProcessStream.Unstreamable("Only text traces are streamed");
+            }
+            
+            if (measure)
+            {
+                scheduler.metrics = new Metrics();
+                scheduler.metrics.use = scheduler.use;
+            }
+            
+            long writing = System.nanoTime();
+            long simulating = writing;
+            long simulated = writing;
+            try (TraceWriter out = new TraceWriter(outputFilename))
+            {
+                out.writeHeader(scheduler);
+                simulating = System.nanoTime();
+                simulate(scheduler, out);
+                stream.finish();
+                simulated = System.nanoTime();
+                stream.writeFooter(out, scheduler.end);
+            }
+            catch (ProcessStream.Unstreamable e)
+            {
+                //  Drop the partial trace before the in-memory run rewrites it
+                new File(outputFilename).delete();
+                throw e;
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error: Unable to create " + outputFilename);
+                System.out.println(e);
+            }
+            if (measure)
+            {
+                writeMetrics(scheduler.metrics, simulated - simulating, System.nanoTime() - simulated + simulating - writing);
+            }
+            return true;
+        }
+        catch (ProcessStream.Unstreamable e)
+        {
+            return false;
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+    
+    /**
+     * Runs a batch of simulations in parallel and writes their summary
+     * @param inputs
+     *      Input files, directories or glob patterns
+     * @param sweep
+     *      Parameter name and values such as "quantum 1..64", or null to run each input as it is
+     */
+    public static void batch(List<String> inputs, String sweep)
+    {
+        String parameter = null;
+        String values = null;
+        if (sweep != null)
+        {
+            String[] part = sweep.trim().split("\\s+", 2);
+            if (part.length < 2)
+            {
+                System.out.println("Error: Missing values for --sweep");
+                return;
+            }
+            parameter = part[0];
+            values = part[1];
+        }
+        
+        try
+        {
+            BatchRunner.run(inputs, parameter, values);
+        }
+        catch (NumberFormatException e)
+        {
+            System.out.println("Error: Invalid values for --sweep " + values);
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("Error: " + e.getMessage() + ", --sweep " + values + " has more.");
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Unable to create " + BatchRunner.summaryFilename);
+            System.out.println(e);
+        }
+    }
+    
+    //  Runs every policy concurrently and writes their results side by side to the output file
+    public static void compare(Scheduler scheduler)
+    {
+        PolicyComparison comparison = new PolicyComparison(scheduler);
+        comparison.simulate(pool);
+        try
+        {
+            comparison.write(outputFilename);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Unable to create " + outputFilename);
+            System.out.println(e);
+        }
+    }
+    
+    //  Runs the algorithm selected by the "use" parameter, with its own policy on every processor
+    public static void simulate(Scheduler scheduler, TraceSink out) throws IOException
+    {
+        SchedulingPolicy[] policies = new SchedulingPolicy[scheduler.getCpus()];
+        scheduler.keys = null;
+        for (int cpu = 0; cpu < policies.length; cpu++)
+        {
+            policies[cpu] = scheduler.policy();
+        }
+        simulate(scheduler, policies, out);
+    }
+    
+    /**
+     * Searches for the quantum that minimizes an objective on the input file, and writes every quantum
+     * evaluated to the output file. A "quantum" line is not needed, its value is ignored.
+     * @param objective
+     *      "wait", "p99" or "switches", see QuantumSearch
+     */
+    public static void tune(String objective)
+    {
+        if (!QuantumSearch.OBJECTIVES.contains(objective))
+        {
+            System.out.println("Error: Unknown objective " + objective);
+            return;
+        }
+        
+        Scheduler scheduler;
+        try
+        {
+            InputParser parser = new InputParser(new Scheduler());
+            parser.read(inputFilename);
+            scheduler = parser.scheduler;
+            if (scheduler.quantum == null)
+            {
+                scheduler.quantum = 1;
+            }
+            scheduler = validateInput(scheduler);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: " + inputFilename + " could not be read.");
+            return;
+        }
+        catch (NumberFormatException | IndexOutOfBoundsException e)
+        {
+            System.out.println("Error: Formatting error in " + inputFilename );
+            return;
+        }
+        if (scheduler.use.equals("all"))
+        {
+            System.out.println("Error: Only one policy can be tuned at a time.");
+            return;
+        }
+        if (!scheduler.useref.containsKey(scheduler.use))
+        {
+            return;
+        }
+        if (!scheduler.usesQuantum())
+        {
+            System.out.println("Error: " + scheduler.usename + " does not use a quantum.");
+            return;
+        }
+        
+        QuantumSearch search = new QuantumSearch(scheduler, objective);
+        try
+        {
+            search.load(tuneFilename);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: " + tuneFilename + " could not be read.");
+            return;
+        }
+        QuantumSearch.Evaluation best = search.search(pool);
+        try
+        {
+            search.save(tuneFilename);
+            search.write(outputFilename, best);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Unable to create " + outputFilename + " or " + tuneFilename);
+            System.out.println(e);
+        }
+    }
+    
+    //  Keeps a warm engine running for workloads sent over a socket or stdin
+    public static void serve(String address)
+    {
+        try
+        {
+            new SimulationService().serve(address);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Unable to serve on " + address);
+            System.out.println(e);
+        }
+    }
+    
+    //  Renders the binary trace file into the text output file
+    public static void render()
+    {
+        try
+        {
+            BinaryTraceReader.render(binaryFilename, outputFilename);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: " + binaryFilename + " could not be rendered to " + outputFilename);
+            System.out.println(e);
+        }
     }
     
     //  Opens and reads input file, returns as list of Strings
@@ -128,7 +579,7 @@ public class Schedule {
             if (line.startsWith(runfor_))
             {
                 line = line.split(runfor_)[1].trim();
-                scheduler.runfor = Integer.valueOf(line);
+                scheduler.runfor = Long.valueOf(line);
                 continue;
             }
             
@@ -149,11 +600,28 @@ public class Schedule {
                 continue;
             }
             
+            String trace_ = "trace";
+            if (line.startsWith(trace_))
+            {
+                line = line.split(trace_)[1].trim();
+                scheduler.trace = line;
+                continue;
+            }
+            
+            String cpus_ = "cpus";
+            if (line.startsWith(cpus_))
+            {
+                line = line.split(cpus_)[1].trim();
+                scheduler.cpus = Integer.valueOf(line);
+                continue;
+            }
+            
             Process process = null;
             
             String processname_ = "process name";
             String arrival_ = "arrival";
             String burst_ = "burst";
+            String priority_ = "priority";
             
             //  Note: Will only detect "process name" if separator is a space
             if (line.startsWith(processname_))
@@ -167,24 +635,28 @@ public class Schedule {
                 {
                     line = line.split(arrival_)[1].trim();
                     part = line.split(" ", 2);
-                    Integer processArrival = Integer.valueOf(part[0]);
+                    Long processArrival = Long.valueOf(part[0]);
                     line = part[1].trim();
                     
                     if (line.startsWith(burst_))
                     {
                         line = line.split(burst_)[1].trim();
                         part = line.split(" ", 2);
-                        Integer processBurst = Integer.valueOf(part[0]);
+                        Long processBurst = Long.valueOf(part[0]);
+                        
+                        //  Optional priority after the burst, lower values run first
+                        Integer processPriority = 0;
+                        if (part.length > 1 && part[1].trim().startsWith(priority_))
+                        {
+                            line = part[1].trim().split(priority_)[1].trim();
+                            processPriority = Integer.valueOf(line.split(" ", 2)[0]);
+                        }
                         //  Create new Process only if all parameters were found in line
-                        process = new Process(processName, processArrival, processBurst);
+                        process = scheduler.addProcess(processName, processArrival, processBurst, processPriority);
                     }
                 }
                 
-                if (process != null)
-                {
-                    scheduler.addProcess(process);
-                }
-                else
+                if (process == null)
                 {
                     System.out.println("Error: Unable to parse process parameters from input file.");
                 }
@@ -203,30 +675,20 @@ public class Schedule {
             System.out.println("\t" +line);
         }
         
-        String rr_ = "rr";
-        String fcfs_ = "fcfs";
-        String sjf_ = "sjf";
-        String errorMessage = "";
-        
-        //  Print errors depending on inconsistencies from input.
-        if (!Arrays.asList(rr_, fcfs_, sjf_).contains(scheduler.use))
-        {
-            errorMessage = "Error: Invalid \"use\" parameter.";
-        }
-        else if (scheduler.use.equals(rr_) && scheduler.quantum == null)
-        {
-            errorMessage = "Error: Missing quantum parameter.";
-        }
-//        else if (!scheduler.use.equals(rr_) && scheduler.quantum != null)
-//        {
-//            errorMessage = "Error: Unecessary quantum parameter.";
-//        }
-        else if (scheduler.processcount != scheduler.processes.size())
-        {
-            errorMessage = "Error: Number of processes does not equal \"processcount\" parameter.";
-        }
-        
-        if (!errorMessage.equals(""))
+        return validateInput(scheduler);
+    }
+    
+    /**
+     * Checks parsed input for inconsistencies
+     * @param scheduler
+     *      Scheduler object with properties read from input file
+     * @return
+     *      The same Scheduler, or an empty Scheduler after printing an error if the input is inconsistent
+     */
+    public static Scheduler validateInput(Scheduler scheduler)
+    {
+        String errorMessage = inputError(scheduler);
+        if (errorMessage != null)
         {
             System.out.println(errorMessage);
             scheduler = new Scheduler();
@@ -236,377 +698,368 @@ public class Schedule {
     }
     
     /**
-     * Formats output string and writes to output file
+     * Looks for inconsistencies in parsed input
      * @param scheduler
-     *      Scheduler object with properties updated during execution
-     * @param processString 
-     *      String built during scheduler simulation
+     *      Scheduler object with properties read from input file
+     * @return
+     *      Error message for the first inconsistency found, or null if there is none
      */
-    public static void writeOutput(Scheduler scheduler, String processString)
+    public static String inputError(Scheduler scheduler)
     {
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-              new FileOutputStream(outputFilename), "utf-8")))
+        String text_ = "text";
+        String binary_ = "binary";
+        String compact_ = "compact";
+        String errorMessage = "";
+        
+        //  Print errors depending on inconsistencies from input.
+        if (!scheduler.useref.containsKey(scheduler.use) && !scheduler.use.equals("all"))
         {
-            String ops;
-            
-            StringBuilder headerString = new StringBuilder();
-            ops = Integer.toString(scheduler.processcount) + " processes" + "\n";
-            ops += "Using " + scheduler.usename + "\n";
-            if (scheduler.quantum != null)
-            {
-                ops += "Quantum " + Integer.toString(scheduler.quantum) + "\n";
-            }
-            ops += "\n";
-            headerString.append(ops);
-            
-            StringBuilder footerString = new StringBuilder();
-            ops = "Finished at time " + Integer.toString(scheduler.end) + "\n\n";
-            
-            for (Process p : scheduler.processes)
-            {
-                ops += p.name + " wait " + Integer.toString(p.wait);
-                if (p.turnaround > 0)
-                {
-                    ops += " turnaround " + Integer.toString(p.turnaround);
-                }
-                ops += "\n";
-            }
-            footerString.append(ops);
-            
-            writer.write(headerString + processString + footerString);
+            errorMessage = "Error: Invalid \"use\" parameter.";
         }
-        catch (IOException e)
+        else if (!Arrays.asList(text_, binary_, compact_).contains(scheduler.trace))
         {
-            System.out.println("Error: Unable to create " + outputFilename);
-            System.out.println(e);
+            errorMessage = "Error: Invalid \"trace\" parameter.";
         }
+        else if (scheduler.usesQuantum() && scheduler.quantum == null)
+        {
+            errorMessage = "Error: Missing quantum parameter.";
+        }
+        else if (scheduler.runfor == null)
+        {
+            errorMessage = "Error: Missing runfor parameter.";
+        }
+        else if (scheduler.getCpus() < 1)
+        {
+            errorMessage = "Error: Invalid \"cpus\" parameter.";
+        }
+//        else if (!scheduler.usesQuantum() && scheduler.quantum != null)
+//        {
+//            errorMessage = "Error: Unecessary quantum parameter.";
+//        }
+        else if (scheduler.processcount != scheduler.table.size)
+        {
+            errorMessage = "Error: Number of processes does not equal \"processcount\" parameter.";
+        }
+        
+        return errorMessage.equals("") ? null : errorMessage;
     }
     
-    //  
     /**
-     * Executes First-Come First-Served
+     * Runs the simulation, leaving the choice of the next process on each processor to its own policy
+     * Arrivals join the least loaded processor, and a processor with nothing to run steals a ready
+     * process from the most loaded one. Only processors whose queue changed at the current time are
+     * revisited, and the least and most loaded processors are kept in heaps, so the cost of an event
+     * grows with the logarithm of the number of processors, not with the number itself.
      * @param scheduler 
      *      Scheduler object with attributes parsed from input file
+     * @param policies
+     *      One policy per processor, each picking which of its ready processes runs and for how long
+     * @param out
+     *      Trace that events are written to as they happen
+     * @throws IOException
+     *      Exception if the trace cannot be written
      */
-    public static void fcfs(Scheduler scheduler)
+    public static void simulate(Scheduler scheduler, SchedulingPolicy[] policies, TraceSink out) throws IOException
     {
         //  Initialize variables for simulation
-        Integer time = 0;
-        List<Process> queue = new ArrayList<>();
-        Boolean running = false;
-        List<Process> processes = scheduler.processes;
+        ProcessTable table = scheduler.table;
+        long runfor = scheduler.runfor;
+        int cpus = policies.length;
+        long time = 0;
+        EventQueue events = new EventQueue(cpus);
+        //  A single processor has nothing to balance, and skips the load heaps altogether
+        ProcessorLoad load = cpus > 1 ? new ProcessorLoad(cpus) : null;
+        Metrics metrics = scheduler.metrics;
+        scheduler.indexArrivals();
+        //  A compact trace lets a process run several slices as one stretch when nothing can take its place
+        boolean compact = scheduler.trace.equals("compact");
         
-        StringBuilder out = new StringBuilder();
-        String ops;
+        //  Process running on each processor, the time it was dispatched and the time its burst was last charged
+        int[] running = new int[cpus];
+        long[] dispatched = new long[cpus];
+        long[] charged = new long[cpus];
+        int busyCpus = 0;
+        Arrays.fill(running, -1);
+        long[] busy = new long[cpus];
+        int[] migrations = new int[cpus];
         
-        //  Perform simulation until runfor time is passed
-        while (time < scheduler.runfor)
+        //  Processors whose ready queue or running process changed at the current time
+        int[] touched = new int[cpus];
+        boolean[] isTouched = new boolean[cpus];
+        int touchedCount = 0;
+        
+        //  Pick up where a snapshot left off
+        Snapshots checkpoint = scheduler.checkpoint;
+        if (checkpoint != null && checkpoint.resuming())
         {
-            //  Check for new arrivals at current time
-            for (Process process: processes)
+            time = checkpoint.restore(scheduler, policies, events, load, running, dispatched, charged, busy, migrations);
+            for (int cpu = 0; cpu < cpus; cpu++)
             {
-                if (process.arrival.equals(time))
+                if (running[cpu] >= 0)
                 {
-                    process.start = time;
-                    queue.add(0, process);
-                    ops = "Time " + Integer.toString(time) + ": " + process.name + " arrived" + "\n";
-                    out.append(ops);
+                    busyCpus++;
                 }
             }
-            if (!running)
+        }
+        
+        //  Perform simulation until runfor time is passed, jumping from one event to the next
+        while (time < runfor)
+        {
+            //  Check for new arrivals at current time, each joins the least loaded processor
+            while (scheduler.arrivalDue(time))
             {
-                //  Select process if nothing is running
-                if (queue.size() > 0)
+                int process = scheduler.pollArrival();
+                int cpu = load != null ? load.least() : 0;
+                table.start.set(process, time);
+                table.ready.set(process, time);
+                policies[cpu].onArrival(process, time);
+                if (load != null)
                 {
-                    Process process = queue.get(queue.size()-1);
-                    running = true;
-                    ops = "Time " + Integer.toString(time) + ": " 
-                        + process.name + " selected (burst " 
-                        +  Integer.toString(process.burst) + ")" + "\n";
-                    out.append(ops);
+                    load.add(cpu, 1);
                 }
-                //  Idle if no process is available
-                else
+                out.arrived(time, process);
+                if (metrics != null)
                 {
-                    ops = "Time " + Integer.toString(time) + ": Idle" + "\n";
-                    out.append(ops);
+                    metrics.arrived();
                 }
-            }
-            time++;
-            //  Update/check properties after time period is "complete"
-            if (running)
-            {
-                Process process = queue.get(queue.size()-1);
-                process.burst--;
-                if (process.burst <= 0)
+                if (!isTouched[cpu])
                 {
-                    process.turnaround = time - process.start;
-                    queue.remove(queue.size()-1);
-                    running = false;
-                    ops = "Time " + Integer.toString(time) + ": " 
-                        + process.name + " finished" + "\n";
-                    out.append(ops);
+                    isTouched[cpu] = true;
+                    touched[touchedCount++] = cpu;
                 }
-                //  Update wait time for other processes
-                for (Process p : queue)
+            }
+            
+            //  Serve the processors that changed, then let an idle processor take work from the busiest
+            //  one for as long as that one has a process waiting
+            do
+            {
+                for (int i = 0; i < touchedCount; i++)
                 {
-                    if (!p.equals(process))
+                    int cpu = touched[i];
+                    isTouched[cpu] = false;
+                    SchedulingPolicy policy = policies[cpu];
+                    
+                    //  Check whether process should be preempted, once its burst is brought up to date
+                    if (running[cpu] >= 0)
                     {
-                        p.wait++;
+                        int process = running[cpu];
+                        if (charged[cpu] < time)
+                        {
+                            table.burst.add(process, charged[cpu] - time);
+                            policy.onTick(process, time - charged[cpu], time);
+                            charged[cpu] = time;
+                        }
+                        if (policy.preempts(process, time))
+                        {
+                            table.ready.set(process, time);
+                            busy[cpu] += time - dispatched[cpu];
+                            events.cancel(cpu);
+                            policy.onPreempt(process, time);
+                            running[cpu] = -1;
+                            busyCpus--;
+                            if (metrics != null)
+                            {
+                                metrics.preemptions++;
+                            }
+                        }
                     }
+                    
+                    if (running[cpu] >= 0)
+                    {
+                        continue;
+                    }
+                    
+                    //  Select process if nothing is running, stealing one from the busiest processor if none is ready here
+                    int process = policy.pickNext(time);
+                    if (process < 0 && load != null)
+                    {
+                        int victim = load.most();
+                        if (victim != cpu && (process = policies[victim].steal(running[victim])) >= 0)
+                        {
+                            load.add(victim, -1);
+                            load.add(cpu, 1);
+                            policy.onMigrate(process, policies[victim], time);
+                            migrations[cpu]++;
+                            if (metrics != null)
+                            {
+                                metrics.migrations++;
+                            }
+                            process = policy.pickNext(time);
+                        }
+                    }
+                    if (process >= 0)
+                    {
+                        table.wait.add(process, time - table.ready.get(process));
+                        //  A burst that would run past the largest time completes at it, which no run reaches
+                        long burst = Math.min(Math.max(table.burst.get(process), 1), Long.MAX_VALUE - time);
+                        long slice = policy.slice(process);
+                        
+                        //  With nothing else ready, each expiring slice would hand the processor straight back
+                        //  until the next arrival, so the slices up to then are run as one stretch. Only on a
+                        //  single processor, as another one running out of work could take the process at the
+                        //  end of any slice
+                        long slices = 1;
+                        if (compact && load == null && burst > slice && policy.waiting() == 0 && policy.repeats())
+                        {
+                            long bound = Math.min(scheduler.nextArrival(), runfor);
+                            slices = Math.max((bound - time) / slice, 1);
+                        }
+                        if (slices > 1)
+                        {
+                            //  Only the first selection of the stretch is traced, the ones it stands for are still counted
+                            long skipped;
+                            if (slices * slice >= burst)
+                            {
+                                events.schedule(cpu, time + burst, EventQueue.COMPLETION, process);
+                                skipped = (burst - 1) / slice;
+                            }
+                            else
+                            {
+                                events.schedule(cpu, time + slices * slice, EventQueue.EXPIRATION, process);
+                                skipped = slices - 1;
+                            }
+                            out.selected(time, events.time[cpu], cpu, process, table.burst.get(process));
+                            if (metrics != null)
+                            {
+                                metrics.expirations += skipped;
+                                metrics.dispatches += skipped;
+                            }
+                        }
+                        else if (burst <= slice)
+                        {
+                            events.schedule(cpu, time + burst, EventQueue.COMPLETION, process);
+                            out.selected(time, cpu, process, table.burst.get(process));
+                        }
+                        else
+                        {
+                            events.schedule(cpu, time + slice, EventQueue.EXPIRATION, process);
+                            out.selected(time, cpu, process, table.burst.get(process));
+                        }
+                        running[cpu] = process;
+                        dispatched[cpu] = time;
+                        charged[cpu] = time;
+                        busyCpus++;
+                        if (metrics != null)
+                        {
+                            metrics.dispatched(cpu, process);
+                        }
+                    }
+                }
+                touchedCount = 0;
+                
+                if (load != null && load.get(load.least()) == 0 && load.get(load.most()) > 1)
+                {
+                    int idle = load.least();
+                    isTouched[idle] = true;
+                    touched[touchedCount++] = idle;
                 }
             }
+            while (touchedCount > 0);
             
-        }       
-        
-        scheduler.end = time;
-        writeOutput(scheduler, out.toString());
-    }
-
-    /**
-     * Executes Round Robin
-     * @param scheduler 
-     *      Scheduler object with attributes parsed from input file
-     */
-    public static void rr(Scheduler scheduler)
-    {
-        //  Initialize variables for simulation
-        Integer time = 0;
-        List<Process> queue = new ArrayList<>();
-        Boolean running = false;
-        List<Process> processes = scheduler.processes;
-        Integer quantum = scheduler.quantum;
-        Integer q = scheduler.quantum;
-        
-        StringBuilder out = new StringBuilder();
-        String ops;
-        
-        //  Perform simulation until runfor time is passed
-        while (time < scheduler.runfor)
-        {
-            //  Check for new arrivals at current time
-            for (Process process: processes)
+            //  Snapshot the engine now and then, while no processor is waiting to be served
+            if (checkpoint != null && checkpoint.due())
             {
-                if (process.arrival.equals(time))
-                {
-                    process.start = time;
-                    queue.add(process);
-                    ops = "Time " + Integer.toString(time) + ": " + process.name + " arrived" + "\n";
-                    out.append(ops);
-                }
+                checkpoint.save(time, scheduler, policies, events, load, running, dispatched, charged, busy, migrations, out);
             }
-            if (!running)
+            
+            //  Idle until the next event if no processor has a process to run
+            if (busyCpus == 0)
             {
-                //  Select process if nothing is running
-                if (queue.size() > 0)
-                {
-                    Process process = queue.get(0);
-                    running = true;
-                    q = quantum;
-                    ops = "Time " + Integer.toString(time) + ": " 
-                        + process.name + " selected (burst " 
-                        +  Integer.toString(process.burst) + ")" + "\n";
-                    out.append(ops);
-                }
-                //  Idle if no process is available
-                else
+                long next = Math.min(scheduler.nextArrival(), runfor);
+                out.idle(time, next);
+                if (metrics != null)
                 {
-                    ops = "Time " + Integer.toString(time) + ": Idle" + "\n";
-                    out.append(ops);
+                    metrics.idleTicks += next - time;
                 }
             }
-            time++;
-            q--;
-            //  Update/check properties after time period is "complete"
-            if (running)
+            
+            //  Next stop is the earliest of the next arrival, the next queued event and the end of the run
+            long next = Math.min(Math.min(scheduler.nextArrival(), events.peekTime()), runfor);
+            
+            //  Advance to the next event, the elapsed time is charged to running processes at their next event
+            long elapsed = next - time;
+            time = next;
+            if (metrics != null)
             {
-                Process process = queue.get(0);
-                process.burst--;
-                if (process.burst <= 0)
-                {
-                    process.turnaround = time - process.start;
-                    queue.remove(0);
-                    running = false;
-                    ops = "Time " + Integer.toString(time) + ": " 
-                        + process.name + " finished" + "\n";
-                    out.append(ops);
-                }
-                else if (q <= 0)
+                metrics.elapsed(metrics.live - busyCpus, elapsed);
+            }
+            
+            //  Update/check properties after time period is "complete", on every processor with an event due
+            while (events.peekTime() == time)
+            {
+                int cpu = events.poll();
+                int process = events.process[cpu];
+                SchedulingPolicy policy = policies[cpu];
+                table.burst.add(process, charged[cpu] - time);
+                policy.onTick(process, time - charged[cpu], time);
+                busy[cpu] += time - dispatched[cpu];
+                running[cpu] = -1;
+                busyCpus--;
+                if (events.type[cpu] == EventQueue.COMPLETION)
                 {
-                    Process requeue = queue.remove(0);
-                    queue.add(requeue);
-                    running = false;
+                    table.turnaround.set(process, time - table.start.get(process));
+                    policy.onComplete(process, time);
+                    if (load != null)
+                    {
+                        load.add(cpu, -1);
+                    }
+                    out.finished(time, cpu, process);
+                    if (metrics != null)
+                    {
+                        metrics.completed(table.wait.get(process), table.turnaround.get(process));
+                    }
+                    scheduler.release(process);
                 }
-                 //  Update wait time for other processes
-                for (Process p : queue)
+                else
                 {
-                    if (!p.equals(process))
+                    //  Slice used up, hand the process back to the policy
+                    table.ready.set(process, time);
+                    policy.onExpire(process, time);
+                    if (metrics != null)
                     {
-                        p.wait++;
+                        metrics.expirations++;
                     }
                 }
+                if (!isTouched[cpu])
+                {
+                    isTouched[cpu] = true;
+                    touched[touchedCount++] = cpu;
+                }
             }
-            
         }       
         
-        scheduler.end = time;
-        writeOutput(scheduler, out.toString());
-    }
-    
-    /**
-     * Executes Preemptive Shortest Job First
-     * @param scheduler 
-     *      Scheduler object with attributes parsed from input file
-     */
-    public static void sjf(Scheduler scheduler)
-    {
-        //  Initialize variables for simulation
-        Integer time = 0;
-        List<Process> queue = new ArrayList<>();
-        List<Process> processes = scheduler.processes;
-        Process running = null;
-        Process sj = null;
-        
-        StringBuilder out = new StringBuilder();
-        String ops;
-        
-        //  Perform simulation until runfor time is passed
-        while (time < scheduler.runfor)
+        for (int cpu = 0; cpu < cpus; cpu++)
         {
-            //  Check for new arrivals at current time
-            for (Process process: processes)
-            {
-                if (process.arrival.equals(time))
-                {
-                    process.start = time;
-                    queue.add(process);
-                    Collections.sort(queue, (p1, p2) -> p1.burst.compareTo(p2.burst));
-                    sj = queue.get(0);
-                    ops = "Time " + Integer.toString(time) + ": " + process.name + " arrived" + "\n";
-                    out.append(ops);
-                }
-            }
-            if (running == null)
+            SchedulingPolicy policy = policies[cpu];
+            if (running[cpu] >= 0)
             {
-                //  Select process if nothing is running
-                if (queue.size() > 0)
-                {
-                    running = queue.get(0);
-                    ops = "Time " + Integer.toString(time) + ": " 
-                        + running.name + " selected (burst " 
-                        +  Integer.toString(running.burst) + ")" + "\n";
-                    out.append(ops);
-                }
-                //  Idle if no process is available
-                else
+                table.burst.add(running[cpu], charged[cpu] - time);
+                policy.onTick(running[cpu], time - charged[cpu], time);
+                busy[cpu] += time - dispatched[cpu];
+                if (metrics != null)
                 {
-                    ops = "Time " + Integer.toString(time) + ": Idle" + "\n";
-                    out.append(ops);
+                    metrics.wait.record(table.wait.get(running[cpu]));
                 }
             }
-            //  Check whether process should be preempted
-            else if (running != null && !running.equals(sj))
-            {
-                running = sj;
-                ops = "Time " + Integer.toString(time) + ": " 
-                        + running.name + " selected (burst " 
-                        +  Integer.toString(running.burst) + ")" + "\n";
-                    out.append(ops);
-            }
-            time++;
-            //  Update/check properties after time period is "complete"
-            if (running != null)
+            
+            //  Charge processes still waiting when the run ends
+            for (int i = 0; i < policy.waiting(); i++)
             {
-                running.burst--;
-                if (running.burst <= 0)
+                int process = policy.waiting(i);
+                if (process != running[cpu])
                 {
-                    running.turnaround = time - running.start;
-                    queue.remove(0);
-                    if (queue.size() > 0)
-                    {
-                        Collections.sort(queue, (p1, p2) -> p1.burst.compareTo(p2.burst));
-                        sj = queue.get(0);
-                    }
-                    else
+                    table.wait.add(process, time - table.ready.get(process));
+                    if (metrics != null)
                     {
-                        sj = null;
-                    }
-                    ops = "Time " + Integer.toString(time) + ": " 
-                        + running.name + " finished" + "\n";
-                    out.append(ops);
-                    running = null;
-                }
-                 //  Update wait time for other processes
-                for (Process p : queue)
-                {
-                    if (!p.equals(running))
-                    {
-                        p.wait++;
+                        metrics.wait.record(table.wait.get(process));
                     }
                 }
             }
-            
-        }       
+        }
         
         scheduler.end = time;
-        writeOutput(scheduler, out.toString());
+        scheduler.busy = busy;
+        scheduler.migrations = migrations;
     }
     
 }
-
-//  Process object with properties relating to individual processes
-class Process {
-    
-    String name;
-    Integer arrival;
-    Integer burst;
-    Integer wait;
-    Integer start;
-    Integer turnaround;
-    
-    public Process (String name, Integer arrival, Integer burst)
-    {
-        this.name = name;
-        this.arrival = arrival;
-        this.burst = burst;
-        
-        this.wait = 0;
-        this.start = 0;
-        this.turnaround = 0;
-    }
-}
-
-//  Scheduler object with properties relating to entire simulation
-class Scheduler {
-    
-    List<Process> processes = new ArrayList<>();
-    Map<String, String> useref = new HashMap<String, String>();
-    
-    Integer processcount;
-    Integer runfor;
-    Integer quantum;
-    Integer end;
-    
-    String use;
-    String usename;
-    
-    public Scheduler()
-    {
-        this.quantum = null;
-        this.usename = "";
-        this.use = "";
-        this.useref.put("fcfs", "First-Come First-Served");
-        this.useref.put("rr", "Round Robin");
-        this.useref.put("sjf", "Preemptive Shortest Job First");
-    }
-  
-    public void addProcess(Process process)
-    {
-        this.processes.add(process);
-    }
-    
-    public List<Process> getProcesses()
-    {
-        return this.processes;
-    }
-}
\ No newline at end of file
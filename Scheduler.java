@@ -0,0 +1,245 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+
+//  Scheduler object with properties relating to entire simulation
+class Scheduler {
+    
+    ProcessTable table = new ProcessTable(16);
+    //  Object views of the table rows, only created once asked for, see getProcesses
+    List<Process> processes;
+    int[] arrivals;
+    int arrived;
+    ProcessStream stream;
+    Metrics metrics;
+    Snapshots checkpoint;
+    ReadyHeap.Keys keys;
+    Map<String, String> useref = new HashMap<String, String>();
+    Map<String, Function<Scheduler, SchedulingPolicy>> policyref = new LinkedHashMap<>();
+    
+    Integer processcount;
+    Long runfor;
+    Integer quantum;
+    Integer cpus;
+    Long end;
+    
+    //  Time each processor spent running processes, and processes each one took from another
+    long[] busy;
+    int[] migrations;
+    
+    String use;
+    String usename;
+    String trace;
+    
+    public Scheduler()
+    {
+        this.quantum = null;
+        this.usename = "";
+        this.use = "";
+        this.trace = "text";
+        this.useref.put("fcfs", "First-Come First-Served");
+        this.useref.put("rr", "Round Robin");
+        this.useref.put("sjf", "Preemptive Shortest Job First");
+        this.useref.put("nsjf", "Non-preemptive Shortest Job First");
+        this.useref.put("priority", "Preemptive Priority");
+        this.useref.put("mlfq", "Multilevel Feedback Queue");
+        this.policyref.put("fcfs", FirstComeFirstServed::new);
+        this.policyref.put("rr", RoundRobin::new);
+        this.policyref.put("sjf", scheduler -> new ShortestJobFirst(scheduler, true));
+        this.policyref.put("nsjf", scheduler -> new ShortestJobFirst(scheduler, false));
+        this.policyref.put("priority", PriorityScheduling::new);
+        this.policyref.put("mlfq", MultilevelFeedbackQueue::new);
+    }
+    
+    //  Returns a Scheduler with the same properties over a fork of the process table,
+    //  so several simulations can run from one parsed input without sharing mutable state
+    public Scheduler fork()
+    {
+        Scheduler scheduler = new Scheduler();
+        scheduler.table = this.table.fork();
+        //  The arrival order depends only on the shared arrival column
+        scheduler.arrivals = this.arrivals;
+        scheduler.processcount = this.processcount;
+        scheduler.runfor = this.runfor;
+        scheduler.quantum = this.quantum;
+        scheduler.cpus = this.cpus;
+        scheduler.use = this.use;
+        scheduler.usename = this.usename;
+        scheduler.trace = this.trace;
+        return scheduler;
+    }
+    
+    //  Returns the number of processors to simulate, one unless a "cpus" line says otherwise
+    public int getCpus()
+    {
+        return this.cpus != null ? this.cpus : 1;
+    }
+    
+    //  Returns true if a time or burst of the run can need more than 32 bits, which only inputs
+    //  with such a runfor, arrival or burst can lead to
+    public boolean isWide()
+    {
+        return this.runfor != null && this.runfor > Integer.MAX_VALUE || this.table.isWide();
+    }
+    
+    //  Creates the scheduling policy selected by the "use" parameter
+    public SchedulingPolicy policy()
+    {
+        return this.policyref.get(this.use).apply(this);
+    }
+    
+    //  Returns the heap keys shared by the policies of every processor in the current run
+    public ReadyHeap.Keys keys()
+    {
+        if (this.keys == null)
+        {
+            this.keys = new ReadyHeap.Keys(this.table.size);
+        }
+        return this.keys;
+    }
+    
+    //  Returns the number of processes a processor's ready queue starts out sized for
+    public int capacity()
+    {
+        return this.table.size / getCpus();
+    }
+    
+    //  Returns true if the selected policy needs a "quantum" parameter
+    public boolean usesQuantum()
+    {
+        return usesQuantum(this.use);
+    }
+    
+    public static boolean usesQuantum(String use)
+    {
+        return use.equals("rr") || use.equals("mlfq");
+    }
+  
+    public Process addProcess(String name, long arrival, long burst)
+    {
+        return addProcess(name.getBytes(StandardCharsets.UTF_8), arrival, burst, 0);
+    }
+    
+    public Process addProcess(String name, long arrival, long burst, int priority)
+    {
+        return addProcess(name.getBytes(StandardCharsets.UTF_8), arrival, burst, priority);
+    }
+    
+    public Process addProcess(byte[] name, long arrival, long burst, int priority)
+    {
+        Process process = new Process(this.table, this.table.add(name, arrival, burst, priority));
+        if (this.processes != null)
+        {
+            this.processes.add(process);
+        }
+        return process;
+    }
+    
+    //  Returns a view of every process, created on the first call so the engine and forks never pay for it
+    public List<Process> getProcesses()
+    {
+        if (this.processes == null)
+        {
+            this.processes = new ArrayList<>(this.table.size);
+            for (int id = 0; id < this.table.size; id++)
+            {
+                this.processes.add(new Process(this.table, id));
+            }
+        }
+        return this.processes;
+    }
+    
+    //  Sorts arriving process ids by arrival time once, so due arrivals are handed out in order
+    public void indexArrivals()
+    {
+        //  Streamed input arrives in order already
+        if (this.stream != null)
+        {
+            return;
+        }
+        //  Forks of one input share its index
+        this.arrived = 0;
+        if (this.arrivals != null)
+        {
+            return;
+        }
+        
+        //  Pack (arrival, id) into one key so a primitive sort keeps input order between ties
+        LongColumn arrival = this.table.arrival;
+        int count = 0;
+        if (!arrival.isWide())
+        {
+            long[] keys = new long[this.table.size];
+            for (int id = 0; id < this.table.size; id++)
+            {
+                //  Processes with a negative arrival time never arrive
+                if (arrival.get(id) >= 0)
+                {
+                    keys[count++] = (arrival.get(id) << 32) | id;
+                }
+            }
+            Arrays.sort(keys, 0, count);
+            this.arrivals = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                this.arrivals[i] = (int) keys[i];
+            }
+            return;
+        }
+        
+        //  Arrivals that need 64 bits leave no room for the id, a stable sort of the ids keeps input order instead
+        Integer[] ids = new Integer[this.table.size];
+        for (int id = 0; id < this.table.size; id++)
+        {
+            if (arrival.get(id) >= 0)
+            {
+                ids[count++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, count, (a, b) -> Long.compare(arrival.get(a), arrival.get(b)));
+        this.arrivals = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            this.arrivals[i] = ids[i];
+        }
+    }
+    
+    public boolean arrivalDue(long time)
+    {
+        return nextArrival() == time;
+    }
+    
+    public int pollArrival()
+    {
+        if (this.stream != null)
+        {
+            return this.stream.pollArrival();
+        }
+        return this.arrivals[this.arrived++];
+    }
+    
+    //  Returns the time of the next arrival, or Long.MAX_VALUE if none remain
+    public long nextArrival()
+    {
+        if (this.stream != null)
+        {
+            return this.stream.nextArrival();
+        }
+        return this.arrived < this.arrivals.length ? this.table.arrival.get(this.arrivals[this.arrived]) : Long.MAX_VALUE;
+    }
+    
+    //  Called once a process has finished and its row is only needed for the footer
+    public void release(int id)
+    {
+        if (this.stream != null)
+        {
+            this.stream.release(id);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+//  Decides which ready process runs next
+//  Schedule.simulate owns the clock, the trace and the wait accounting, and drives a policy through
+//  these callbacks only at events (arrivals, completions, expired slices), never once per tick
+interface SchedulingPolicy {
+    
+    //  Slice returned by policies that let a process run until it finishes
+    long UNLIMITED = Long.MAX_VALUE;
+    
+    //  A process arrived and is ready to run
+    void onArrival(int process, long time);
+    
+    //  Returns the process to run next, or -1 if none is ready
+    int pickNext(long time);
+    
+    //  Returns the longest time the selected process may run before its slice expires
+    long slice(int process);
+    
+    //  Returns true if the selected process, should its slice expire while nothing else is ready here,
+    //  would be picked again at once for a slice of the same length, so that the engine can run those
+    //  slices as one stretch
+    boolean repeats();
+    
+    //  Elapsed time was charged to the running process, its remaining burst is already reduced
+    void onTick(int process, long elapsed, long time);
+    
+    //  Returns true if the running process should give up the processor to a ready process
+    boolean preempts(int running, long time);
+    
+    //  The running process was preempted and is ready again
+    void onPreempt(int process, long time);
+    
+    //  The running process used up its slice before its burst and is ready again
+    void onExpire(int process, long time);
+    
+    //  The running process finished its burst
+    void onComplete(int process, long time);
+    
+    //  Gives up a ready process to another processor's policy, or returns -1 if none can move
+    //  The process given up is one that would run late here, never the running one
+    int steal(int running);
+    
+    //  A process taken from another processor's policy is ready to run here
+    void onMigrate(int process, SchedulingPolicy from, long time);
+    
+    //  Writes the processes the policy holds and any counters it keeps, in a form restore reads back
+    //  into a new policy of the same kind so that it makes the same choices from then on
+    void save(SnapshotBuffer out);
+    
+    void restore(SnapshotBuffer in);
+    
+    //  Returns the number of processes the policy holds, for charging their wait when the run ends
+    int waiting();
+    
+    //  Returns one of the processes the policy holds, in no particular order
+    int waiting(int index);
+}
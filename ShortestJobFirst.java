@@ -0,0 +1,135 @@
+//  Runs the process with the shortest remaining burst, ties going to the earliest arrival
+//  When preemptive, a new arrival with a shorter remaining burst takes over the processor,
+//  otherwise the selected process runs until it finishes
+class ShortestJobFirst implements SchedulingPolicy {
+    
+    ProcessTable table;
+    ReadyHeap queue;
+    boolean preemptive;
+    
+    //  Arrivals break ties in arrival order, while a process that has run
+    //  is ordered ahead of every other process with the same remaining burst
+    long behind;
+    long ahead;
+    
+    public ShortestJobFirst(Scheduler scheduler, boolean preemptive)
+    {
+        this.table = scheduler.table;
+        this.queue = new ReadyHeap(scheduler.capacity(), scheduler.keys());
+        this.preemptive = preemptive;
+        this.behind = 0;
+        this.ahead = 0;
+    }
+    
+    @Override
+    public void onArrival(int process, long time)
+    {
+        this.queue.insert(process, this.table.burst.get(process), ++this.behind);
+    }
+    
+    //  The running process stays at the root of the heap while it runs,
+    //  so preemption is a single look at the root
+    @Override
+    public int pickNext(long time)
+    {
+        return this.preemptive ? this.queue.peek() : this.queue.poll();
+    }
+    
+    @Override
+    public long slice(int process)
+    {
+        return UNLIMITED;
+    }
+    
+    //  Slices never expire
+    @Override
+    public boolean repeats()
+    {
+        return false;
+    }
+    
+    @Override
+    public void onTick(int process, long elapsed, long time)
+    {
+        if (this.preemptive)
+        {
+            this.queue.decreaseKey(process, this.table.burst.get(process), --this.ahead);
+        }
+    }
+    
+    @Override
+    public boolean preempts(int running, long time)
+    {
+        return this.preemptive && this.queue.peek() != running;
+    }
+    
+    @Override
+    public void onPreempt(int process, long time)
+    {
+    }
+    
+    @Override
+    public void onExpire(int process, long time)
+    {
+    }
+    
+    @Override
+    public void onComplete(int process, long time)
+    {
+        if (this.preemptive)
+        {
+            this.queue.poll();
+        }
+    }
+    
+    //  A leaf of the heap, which is never the shortest ready process unless it is the only one
+    @Override
+    public int steal(int running)
+    {
+        int size = this.queue.size();
+        int process = size > 0 ? this.queue.get(size - 1) : -1;
+        if (process == running)
+        {
+            process = size > 1 ? this.queue.get(size - 2) : -1;
+        }
+        if (process >= 0)
+        {
+            this.queue.remove(process);
+        }
+        return process;
+    }
+    
+    @Override
+    public void onMigrate(int process, SchedulingPolicy from, long time)
+    {
+        onArrival(process, time);
+    }
+    
+    @Override
+    public void save(SnapshotBuffer out)
+    {
+        out.putHeap(this.queue);
+        out.putLong(this.behind);
+        out.putLong(this.ahead);
+    }
+    
+    @Override
+    public void restore(SnapshotBuffer in)
+    {
+        in.getHeap(this.queue);
+        this.behind = in.getLong();
+        this.ahead = in.getLong();
+    }
+    
+    @Override
+    public int waiting()
+    {
+        return this.queue.size();
+    }
+    
+    @Override
+    public int waiting(int index)
+    {
+        return this.queue.get(index);
+    }
+}
@@ -0,0 +1,393 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+//  Long-lived simulation service, so a run costs a parse and a simulation instead of a JVM launch
+//  and a JIT warmup. Workloads arrive over a loopback TCP port, a Unix-domain socket or stdin,
+//  and every connection is served on its own virtual thread where the JDK has them
+//
+//  Protocol, line by line in UTF-8:
+//      request   an optional "--metrics" line, then an input in the processes.in format through its "end" line
+//      response  the trace exactly as processes.out would hold it, streamed while the simulation runs,
+//                then "#metrics" and the metrics.json object when asked for, then "#end"
+//  Any number of requests can follow each other on one connection. Lines of the response that start
+//  with '#' come from the service, never from the trace, since '#' starts a comment in the input.
+//  Messages about the input are sent that way too, as in "#Error: Missing quantum parameter."
+class SimulationService {
+
+    static final byte[] METRICS = ByteWriter.bytes("#metrics\n");
+    static final byte[] END = ByteWriter.bytes("#end\n");
+
+    //  Time spent warming up before the service takes requests, the JIT needs a few hundred thousand
+    //  parsed lines and simulated events to settle
+    static final long WARMUP_NANOS = 2_000_000_000L;
+
+    ExecutorService executor;
+
+    public SimulationService()
+    {
+        this.executor = executor();
+    }
+
+    /**
+     * Serves requests until the process is stopped, or until stdin ends
+     * @param address
+     *      Loopback port number, "-" for stdin and stdout, or the path of a Unix-domain socket
+     * @throws IOException
+     *      Exception if the address cannot be listened on
+     */
+    public void serve(String address) throws IOException
+    {
+        warm();
+        if (address.equals("-"))
+        {
+            new Connection(new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out).getChannel()).run();
+            return;
+        }
+        try (ServerSocketChannel server = open(address))
+        {
+            System.out.println("Serving on " + server.getLocalAddress());
+            while (true)
+            {
+                SocketChannel channel = server.accept();
+                if (channel.getLocalAddress() instanceof InetSocketAddress)
+                {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                this.executor.execute(new Connection(Channels.newInputStream(channel), channel));
+            }
+        }
+    }
+
+    //  Returns a virtual thread per task executor on JDK 21 and later, a cached thread pool before that
+    static ExecutorService executor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    //  Listens on a loopback port, or on a Unix-domain socket on JDK 16 and later
+    static ServerSocketChannel open(String address) throws IOException
+    {
+        if (address.matches("[0-9]+"))
+        {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+            return server;
+        }
+        ServerSocketChannel server;
+        SocketAddress path;
+        try
+        {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                .invoke(null, unix);
+            path = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class)
+                .invoke(null, address);
+        }
+        catch (IllegalArgumentException | ReflectiveOperationException e)
+        {
+            throw new IOException("Unix-domain sockets need Java 16 or later");
+        }
+        Files.deleteIfExists(Paths.get(address));
+        server.bind(path);
+        Paths.get(address).toFile().deleteOnExit();
+        return server;
+    }
+
+    //  Compiles the parser, engine, policies and trace writer before the first request needs them,
+    //  by running a small built-in workload under every policy on one and on two processors
+    void warm()
+    {
+        StringBuilder processes = new StringBuilder();
+        for (int i = 0; i < 256; i++)
+        {
+            processes.append("process name P").append(i).append(" arrival ").append(i * 7)
+                .append(" burst ").append(i * 13 % 29 + 1).append(" priority ").append(i % 5).append('\n');
+        }
+        List<byte[]> requests = new ArrayList<>();
+        for (String use : new Scheduler().policyref.keySet())
+        {
+            for (int cpus = 1; cpus <= 2; cpus++)
+            {
+                requests.add(("processcount 256\nrunfor 8000\nuse " + use + "\nquantum 3\ncpus " + cpus + "\n"
+                    + processes + "end\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Connection connection = new Connection(null, Channels.newChannel(OutputStream.nullOutputStream()));
+        long deadline = System.nanoTime() + WARMUP_NANOS;
+        for (int i = 0; System.nanoTime() - deadline < 0; i++)
+        {
+            byte[] request = requests.get(i % requests.size());
+            try
+            {
+                connection.handle(request, request.length, i % 4 == 0);
+            }
+            catch (IOException e)
+            {
+                return;
+            }
+        }
+    }
+
+    //  One client, answered request by request with a trace writer kept for the whole connection
+    static class Connection implements Runnable {
+
+        InputStream in;
+        WritableByteChannel channel;
+        TraceWriter out;
+        //  Bytes received and not yet handled, between position and limit
+        byte[] input;
+        int position;
+        int limit;
+        //  Request being read, and whether it asked for metrics
+        byte[] request;
+        boolean metrics;
+
+        Connection(InputStream in, WritableByteChannel channel)
+        {
+            this.in = in;
+            this.channel = channel;
+            this.out = new TraceWriter(channel);
+            this.input = new byte[1 << 16];
+            this.position = 0;
+            this.limit = 0;
+            this.request = new byte[1 << 12];
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                int length;
+                while ((length = read()) >= 0)
+                {
+                    handle(this.request, length, this.metrics);
+                }
+            }
+            catch (IOException e)
+            {
+                //  The client went away
+            }
+            finally
+            {
+                try
+                {
+                    this.channel.close();
+                }
+                catch (IOException e)
+                {
+                    //  Nothing left to tell the client
+                }
+            }
+        }
+
+        /**
+         * Reads the next request into the request buffer, without its option lines
+         * @return
+         *      Length of the request, or -1 if the client has nothing more to send
+         */
+        int read() throws IOException
+        {
+            int length = 0;
+            this.metrics = false;
+            while (true)
+            {
+                //  Copy the next line into the request, receiving more bytes as needed
+                int start = length;
+                boolean more = true;
+                while (true)
+                {
+                    if (this.position == this.limit)
+                    {
+                        this.position = 0;
+                        this.limit = Math.max(this.in.read(this.input), 0);
+                        if (this.limit == 0)
+                        {
+                            more = false;
+                            break;
+                        }
+                    }
+                    int end = this.position;
+                    while (end < this.limit && this.input[end] != '\n')
+                    {
+                        end++;
+                    }
+                    if (length + end - this.position > this.request.length - 1)
+                    {
+                        this.request = Arrays.copyOf(this.request, Math.max(this.request.length * 2,
+                            length + end - this.position + 1));
+                    }
+                    System.arraycopy(this.input, this.position, this.request, length, end - this.position);
+                    length += end - this.position;
+                    this.position = end;
+                    if (end < this.limit)
+                    {
+                        this.position++;
+                        break;
+                    }
+                }
+                if (!more && blank(this.request, length))
+                {
+                    return -1;
+                }
+
+                //  Option lines are taken out, the "end" line ends the request as it ends the parser's input
+                int from = start;
+                while (from < length && (this.request[from] & 0xFF) <= ' ')
+                {
+                    from++;
+                }
+                if (from + 1 < length && this.request[from] == '-' && this.request[from + 1] == '-')
+                {
+                    String option = new String(this.request, from, length - from, StandardCharsets.UTF_8);
+                    if (option.split("#")[0].trim().equals("--metrics"))
+                    {
+                        this.metrics = true;
+                        length = start;
+                        continue;
+                    }
+                }
+                if (!more || (from + 2 < length && this.request[from] == 'e' && this.request[from + 1] == 'n'
+                    && this.request[from + 2] == 'd'))
+                {
+                    return length;
+                }
+                this.request[length++] = '\n';
+            }
+        }
+
+        //  Returns true if nothing but blanks has been received, as after the last request
+        static boolean blank(byte[] bytes, int length)
+        {
+            for (int i = 0; i < length; i++)
+            {
+                if ((bytes[i] & 0xFF) > ' ')
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //  Parses, simulates and answers one request
+        void handle(byte[] request, int length, boolean measure) throws IOException
+        {
+            TraceWriter out = this.out;
+            long parsing = System.nanoTime();
+            Scheduler scheduler = new Scheduler();
+            List<String> messages = new ArrayList<>();
+            InputParser parser = new InputParser(scheduler)
+            {
+                @Override
+                void message(String text)
+                {
+                    messages.add(text);
+                }
+            };
+            try
+            {
+                parser.read(ByteBuffer.wrap(request, 0, length));
+                String error = Schedule.inputError(scheduler);
+                if (error != null)
+                {
+                    messages.add(error);
+                    scheduler = null;
+                }
+            }
+            catch (NumberFormatException | IndexOutOfBoundsException e)
+            {
+                messages.add("Error: Formatting error in request");
+                scheduler = null;
+            }
+            for (String message : messages)
+            {
+                out.put((byte) '#');
+                out.put(ByteWriter.bytes(message));
+                out.put((byte) '\n');
+            }
+
+            try
+            {
+                if (scheduler != null && scheduler.use.equals("all"))
+                {
+                    PolicyComparison comparison = new PolicyComparison(scheduler);
+                    comparison.simulate(Schedule.pool);
+                    StringWriter table = new StringWriter();
+                    comparison.write(new PrintWriter(table));
+                    out.put(ByteWriter.bytes(table.toString()));
+                }
+                else if (scheduler != null)
+                {
+                    Metrics metrics = null;
+                    if (measure)
+                    {
+                        metrics = new Metrics();
+                        metrics.parseNanos = System.nanoTime() - parsing;
+                        metrics.use = scheduler.use;
+                        scheduler.metrics = metrics;
+                    }
+                    long writing = System.nanoTime();
+                    out.writeHeader(scheduler);
+                    long simulating = System.nanoTime();
+                    Schedule.simulate(scheduler, out);
+                    long simulated = System.nanoTime();
+                    out.writeFooter(scheduler);
+                    if (metrics != null)
+                    {
+                        metrics.simulateNanos = simulated - simulating;
+                        metrics.writeNanos = System.nanoTime() - simulated + simulating - writing;
+                        metrics.commit();
+                        out.put(METRICS);
+                        out.put(ByteWriter.bytes(metrics.toJson()));
+                        out.put((byte) '\n');
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {
+                //  A failed run ends its response, the service carries on
+                out.put(ByteWriter.bytes("#Error: " + e + "\n"));
+            }
+            out.put(END);
+            out.flush();
+        }
+    }
+}
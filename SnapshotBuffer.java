@@ -0,0 +1,287 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+//  Growable buffer a snapshot of the engine is written to and read back from
+//  Checkpoint and SnapshotLog both encode process rows, processors and policies through it, so the two
+//  file formats share one encoding of the engine state
+//
+//  Layout of the parts it writes:
+//      rows        remaining bursts, waits, ready times, start times and turnarounds of a list of processes,
+//                  one column after another
+//      processors  per cpu running process, dispatch time, charge time, busy time, migrations, load,
+//                  then the pending event (a flag, then time, type and process), then the state each
+//                  processor's policy saves, see SchedulingPolicy.save
+//  Times and bursts are longs, other numbers ints, all big-endian
+class SnapshotBuffer {
+
+    ByteBuffer buffer;
+    //  Column of the rows being written or read
+    long[] column;
+
+    public SnapshotBuffer()
+    {
+        this.buffer = ByteBuffer.allocate(1 << 16);
+        this.column = new long[0];
+    }
+
+    //  Reads back from bytes read from a file
+    public SnapshotBuffer(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        this.column = new long[0];
+    }
+
+    //  Empties the buffer to write a new snapshot
+    void clear()
+    {
+        this.buffer.clear();
+    }
+
+    //  Reads back from a snapshot read from a file
+    void wrap(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    //  Lets go of a snapshot that has been read back, which can be large, to write small ones again
+    void reset()
+    {
+        this.buffer = ByteBuffer.allocate(1 << 16);
+    }
+
+    void reserve(int bytes)
+    {
+        if (this.buffer.remaining() < bytes)
+        {
+            long capacity = Math.max((long) this.buffer.capacity() * 2, (long) this.buffer.position() + bytes);
+            if (capacity > Integer.MAX_VALUE - 8)
+            {
+                throw new IllegalStateException("Snapshot larger than 2 GB");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) capacity);
+            this.buffer.flip();
+            buffer.put(this.buffer);
+            this.buffer = buffer;
+        }
+    }
+
+    public void putInt(int value)
+    {
+        reserve(4);
+        this.buffer.putInt(value);
+    }
+
+    public void putLong(long value)
+    {
+        reserve(8);
+        this.buffer.putLong(value);
+    }
+
+    public void putBytes(byte[] bytes)
+    {
+        putInt(bytes.length);
+        reserve(bytes.length);
+        this.buffer.put(bytes);
+    }
+
+    public int getInt()
+    {
+        return this.buffer.getInt();
+    }
+
+    public long getLong()
+    {
+        return this.buffer.getLong();
+    }
+
+    public String getString()
+    {
+        byte[] bytes = new byte[getInt()];
+        this.buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //  Saves a column of a table in one transfer, a loop of single puts costs far more before the JIT steps in
+    public void putLongs(long[] values, int count)
+    {
+        reserve(8 * count);
+        this.buffer.asLongBuffer().put(values, 0, count);
+        this.buffer.position(this.buffer.position() + 8 * count);
+    }
+
+    public long[] getLongs(int count)
+    {
+        return getLongs(new long[count], count);
+    }
+
+    public long[] getLongs(long[] values, int count)
+    {
+        this.buffer.asLongBuffer().get(values, 0, count);
+        this.buffer.position(this.buffer.position() + 8 * count);
+        return values;
+    }
+
+    public void putInts(int[] values, int count)
+    {
+        reserve(4 * count);
+        this.buffer.asIntBuffer().put(values, 0, count);
+        this.buffer.position(this.buffer.position() + 4 * count);
+    }
+
+    public int[] getInts(int count)
+    {
+        int[] values = new int[count];
+        this.buffer.asIntBuffer().get(values);
+        this.buffer.position(this.buffer.position() + 4 * count);
+        return values;
+    }
+
+    public byte[] getBytes(int count)
+    {
+        byte[] values = new byte[count];
+        this.buffer.get(values);
+        return values;
+    }
+
+    //  Saves a ready queue from head to tail
+    public void putQueue(ReadyQueue queue)
+    {
+        putInt(queue.size());
+        for (int i = 0; i < queue.size(); i++)
+        {
+            putInt(queue.get(i));
+        }
+    }
+
+    public void getQueue(ReadyQueue queue)
+    {
+        for (int count = getInt(); count > 0; count--)
+        {
+            queue.add(getInt());
+        }
+    }
+
+    //  Saves a ready heap slot by slot with the keys of every id, so it comes back in the same shape
+    public void putHeap(ReadyHeap heap)
+    {
+        putInt(heap.size());
+        for (int i = 0; i < heap.size(); i++)
+        {
+            int id = heap.get(i);
+            putInt(id);
+            putLong(heap.keys.primary.get(id));
+            putLong(heap.keys.secondary.get(id));
+        }
+    }
+
+    public void getHeap(ReadyHeap heap)
+    {
+        for (int count = getInt(); count > 0; count--)
+        {
+            int id = getInt();
+            long key = getLong();
+            heap.append(id, key, getLong());
+        }
+    }
+
+    //  Saves what the run has changed in some rows of the process table
+    void putRows(ProcessTable table, int[] ids, int count)
+    {
+        putColumn(table.burst, ids, count);
+        putColumn(table.wait, ids, count);
+        putColumn(table.ready, ids, count);
+        putColumn(table.start, ids, count);
+        putColumn(table.turnaround, ids, count);
+    }
+
+    void getRows(ProcessTable table, int[] ids, int count)
+    {
+        getColumn(table.burst, ids, count);
+        getColumn(table.wait, ids, count);
+        getColumn(table.ready, ids, count);
+        getColumn(table.start, ids, count);
+        getColumn(table.turnaround, ids, count);
+    }
+
+    void putColumn(LongColumn values, int[] ids, int count)
+    {
+        if (this.column.length < count)
+        {
+            this.column = new long[count];
+        }
+        for (int i = 0; i < count; i++)
+        {
+            this.column[i] = values.get(ids[i]);
+        }
+        putLongs(this.column, count);
+    }
+
+    void getColumn(LongColumn values, int[] ids, int count)
+    {
+        if (this.column.length < count)
+        {
+            this.column = new long[count];
+        }
+        getLongs(this.column, count);
+        for (int i = 0; i < count; i++)
+        {
+            values.set(ids[i], this.column[i]);
+        }
+    }
+
+    //  Saves the state of every processor and of its policy
+    void putProcessors(SchedulingPolicy[] policies, EventQueue events, ProcessorLoad load, int[] running,
+        long[] dispatched, long[] charged, long[] busy, int[] migrations)
+    {
+        for (int cpu = 0; cpu < policies.length; cpu++)
+        {
+            putInt(running[cpu]);
+            putLong(dispatched[cpu]);
+            putLong(charged[cpu]);
+            putLong(busy[cpu]);
+            putInt(migrations[cpu]);
+            putInt(load != null ? load.get(cpu) : 0);
+            boolean scheduled = events.isScheduled(cpu);
+            putInt(scheduled ? 1 : 0);
+            if (scheduled)
+            {
+                putLong(events.time[cpu]);
+                putInt(events.type[cpu]);
+                putInt(events.process[cpu]);
+            }
+        }
+        for (SchedulingPolicy policy : policies)
+        {
+            policy.save(this);
+        }
+    }
+
+    void getProcessors(SchedulingPolicy[] policies, EventQueue events, ProcessorLoad load, int[] running,
+        long[] dispatched, long[] charged, long[] busy, int[] migrations)
+    {
+        for (int cpu = 0; cpu < policies.length; cpu++)
+        {
+            running[cpu] = getInt();
+            dispatched[cpu] = getLong();
+            charged[cpu] = getLong();
+            busy[cpu] = getLong();
+            migrations[cpu] = getInt();
+            int processes = getInt();
+            if (load != null)
+            {
+                load.add(cpu, processes);
+            }
+            if (getInt() != 0)
+            {
+                long time = getLong();
+                int type = getInt();
+                events.schedule(cpu, time, type, getInt());
+            }
+        }
+        for (SchedulingPolicy policy : policies)
+        {
+            policy.restore(this);
+        }
+    }
+}
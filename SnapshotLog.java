@@ -0,0 +1,607 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+//  Snapshots kept from one run so the next run of an edited input only re-simulates what the edit changed
+//  Everything before the earliest arrival an edit touches plays out as it did last time, so the next run
+//  restores the last snapshot taken before it, keeps the trace written up to that point and simulates
+//  only the rest. A snapshot only holds the rows that can have changed since the one before it, those
+//  still unfinished then and those arrived since. Each process is written once as it arrives, and again
+//  only while it stays unfinished, with snapshots spaced by several engine steps for each such row, so
+//  writing the log costs a small part of the work of the run whatever the number of processes
+//
+//  Layout:
+//      snapshots  one after another, each holding time, trace offset counted from the end of the trace
+//                 header, arrivals handed out so far, the number of rows it holds, the arrival positions of
+//                 their processes, then the rows, processors and policies, see SnapshotBuffer
+//      index      algorithm, quantum (-1 if none), processors, trace format, runfor (a long), trace header
+//                 length and trace length (two longs), the number of processes, then column by column the
+//                 arrival and burst (longs), priority and name length of every process, followed by all the
+//                 names, then the number of snapshots and the time, reach, file offset and length (four longs)
+//                 of each
+//      trailer    offset of the index (a long), magic "SNAP" and version
+//  A run cuts the log back to the snapshots that stay valid and writes on from there, with the index
+//  last, so a log whose run did not finish has no trailer and is ignored. Restoring a snapshot applies
+//  the rows of every snapshot up to it in order, then its processors
+//
+//  In a compact trace a stretch of slices is sized by the next arrival when it is dispatched, so an arrival
+//  added before the end of a stretch pending at a snapshot would have cut it short, and one removed from
+//  where it stops would have let it run on. Each snapshot records its reach, the arrival or runfor a
+//  pending stretch was sized by or else its own time, and is only kept if the edit comes after it
+class SnapshotLog implements Snapshots {
+
+    static final int MAGIC = 0x534e4150;
+    static final int VERSION = 5;
+
+    //  Engine steps between snapshots at the least, and for each row an earlier snapshot left unfinished
+    static final int STEPS = 1 << 16;
+    static final int STEPS_PER_ROW = 4;
+
+    String filename;
+    Scheduler scheduler;
+    //  Bursts as parsed, since the run uses up the ones in the table
+    LongColumn bursts;
+    SnapshotBuffer state;
+
+    //  Engine steps since the last snapshot, the arrivals handed out by then, and the arrival positions
+    //  of the processes it left unfinished
+    long steps;
+    int lastArrived;
+    int[] open;
+    int openCount;
+    //  Ids of the rows a snapshot holds
+    int[] ids;
+
+    //  Log being written by this run
+    FileChannel log;
+    int count;
+    long[] times;
+    long[] reaches;
+    long[] offsets;
+    long[] lengths;
+    long headerLength;
+
+    //  What the last run left behind, when this run can continue from it: the snapshots up to the one
+    //  continued from, read back, and the time and trace offset of that one
+    int kept;
+    long keptLength;
+    long oldHeaderLength;
+    ByteBuffer snapshots;
+    boolean resuming;
+    long time;
+    long traceOffset;
+
+    public SnapshotLog(String filename)
+    {
+        this.filename = filename;
+        this.state = new SnapshotBuffer();
+        this.open = new int[1024];
+        this.ids = new int[1024];
+        this.times = new long[64];
+        this.reaches = new long[64];
+        this.offsets = new long[64];
+        this.lengths = new long[64];
+        this.count = 0;
+        this.resuming = false;
+    }
+
+    @Override
+    public void prepare(Scheduler scheduler)
+    {
+        this.scheduler = scheduler;
+        this.bursts = scheduler.table.burst.copyOf(scheduler.table.size);
+    }
+
+    /**
+     * Finds the snapshot of the last run to continue from
+     * @param scheduler
+     *      Freshly parsed Scheduler, already prepared
+     * @return
+     *      Always null, a log that is missing, stale or from other parameters means simulating from the start
+     * @throws IOException
+     *      Exception if the log cannot be read
+     */
+    @Override
+    public String load(Scheduler scheduler) throws IOException
+    {
+        Path path = Paths.get(this.filename);
+        if (!Files.exists(path))
+        {
+            return null;
+        }
+        boolean binary = scheduler.trace.equals("binary");
+        Path trace = Paths.get(binary ? Schedule.binaryFilename : Schedule.outputFilename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            ByteBuffer trailer = read(channel, size - 16, 16);
+            if (trailer == null)
+            {
+                return null;
+            }
+            long position = trailer.getLong();
+            if (trailer.getInt() != MAGIC || trailer.getInt() != VERSION || position < 0 || position > size - 16)
+            {
+                return null;
+            }
+            ByteBuffer bytes = read(channel, position, (int) (size - 16 - position));
+            if (bytes == null)
+            {
+                return null;
+            }
+
+            //  Parameters must match, and the trace must be the one the last run finished
+            SnapshotBuffer index = new SnapshotBuffer(bytes);
+            String use = index.getString();
+            int quantum = index.getInt();
+            int cpus = index.getInt();
+            String format = index.getString();
+            if (!use.equals(scheduler.use) || quantum != (scheduler.quantum != null ? scheduler.quantum : -1)
+                || cpus != scheduler.getCpus() || !format.equals(scheduler.trace))
+            {
+                return null;
+            }
+            long runfor = index.getLong();
+            this.oldHeaderLength = index.getLong();
+            long traceLength = index.getLong();
+            if (!Files.exists(trace) || Files.size(trace) != traceLength)
+            {
+                return null;
+            }
+
+            //  Nothing before the earliest arrival of an edited, added or removed process can have changed
+            long affected = runfor != scheduler.runfor ? Math.min(runfor, scheduler.runfor) : Long.MAX_VALUE;
+            //  A binary trace of 32-bit records cannot be continued with 64-bit ones, or the other way round
+            boolean wide = runfor > Integer.MAX_VALUE;
+            ProcessTable table = scheduler.table;
+            int processes = index.getInt();
+            if (processes < 0 || bytes.remaining() < 24L * processes)
+            {
+                return null;
+            }
+            long[] arrivals = index.getLongs(processes);
+            long[] bursts = index.getLongs(processes);
+            int[] priorities = index.getInts(processes);
+            int[] lengths = index.getInts(processes);
+            int names = 0;
+            for (int id = 0; id < processes; id++)
+            {
+                if (lengths[id] < 0)
+                {
+                    return null;
+                }
+                names += lengths[id];
+            }
+            if (names < 0 || names > bytes.remaining())
+            {
+                return null;
+            }
+            byte[] name = index.getBytes(names);
+            names = 0;
+            for (int id = 0; id < Math.max(processes, table.size); id++)
+            {
+                long arrival = -1;
+                boolean same = false;
+                if (id < processes)
+                {
+                    arrival = arrivals[id];
+                    long burst = bursts[id];
+                    wide |= arrival != (int) arrival || burst != (int) burst;
+                    same = id < table.size && arrival == table.arrival.get(id) && burst == table.burst.get(id)
+                        && priorities[id] == table.priority[id]
+                        && Arrays.equals(name, names, names + lengths[id], table.name[id], 0, table.name[id].length);
+                    names += lengths[id];
+                }
+                if (!same)
+                {
+                    if (arrival >= 0)
+                    {
+                        affected = Math.min(affected, arrival);
+                    }
+                    if (id < table.size && table.arrival.get(id) >= 0)
+                    {
+                        affected = Math.min(affected, table.arrival.get(id));
+                    }
+                }
+            }
+            if (binary && wide != scheduler.isWide())
+            {
+                return null;
+            }
+
+            //  Continue from the last snapshot taken before it
+            int snapshots = index.getInt();
+            if (snapshots >= this.times.length)
+            {
+                this.times = new long[snapshots + 1];
+                this.reaches = new long[snapshots + 1];
+                this.offsets = new long[snapshots + 1];
+                this.lengths = new long[snapshots + 1];
+            }
+            for (int i = 0; i < snapshots; i++)
+            {
+                long time = index.getLong();
+                long reach = index.getLong();
+                long offset = index.getLong();
+                long length = index.getLong();
+                if (time >= affected || reach >= affected)
+                {
+                    break;
+                }
+                this.times[i] = time;
+                this.reaches[i] = reach;
+                this.offsets[i] = offset;
+                this.lengths[i] = length;
+                this.kept = i + 1;
+            }
+            if (this.kept == 0)
+            {
+                return null;
+            }
+            int last = this.kept - 1;
+            this.keptLength = this.offsets[last] + this.lengths[last];
+            if (this.offsets[0] != 0 || this.keptLength > Integer.MAX_VALUE - 8)
+            {
+                return null;
+            }
+            this.snapshots = read(channel, 0, (int) this.keptLength);
+            if (this.snapshots == null)
+            {
+                return null;
+            }
+            this.snapshots.position((int) this.offsets[last]);
+            this.time = this.snapshots.getLong();
+            this.traceOffset = this.snapshots.getLong();
+            this.resuming = true;
+        }
+        return null;
+    }
+
+    //  Reads part of a file, or returns null if the file is too short
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+    {
+        if (position < 0 || length < 0 || position + length > channel.size())
+        {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Opens the trace, keeping the part the snapshot being continued from has already written
+     * If the header has not changed the old trace is cut back in place, otherwise the kept part
+     * is copied behind the new header
+     */
+    @Override
+    public TraceSink open(Scheduler scheduler, String filename, boolean binary) throws IOException
+    {
+        //  Snapshots up to the one being continued from stay valid, the log is cut back to them
+        Path path = Paths.get(this.filename);
+        if (!this.resuming)
+        {
+            this.log = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        else
+        {
+            this.count = this.kept;
+            this.log = FileChannel.open(path, StandardOpenOption.WRITE);
+        }
+        try
+        {
+            this.log.truncate(this.resuming ? this.keptLength : 0);
+            this.log.position(this.resuming ? this.keptLength : 0);
+            return trace(scheduler, filename, binary);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            this.log.close();
+            throw e;
+        }
+    }
+
+    //  Opens the trace for open, closing whatever it opened if it fails
+    TraceSink trace(Scheduler scheduler, String filename, boolean binary) throws IOException
+    {
+        if (!this.resuming)
+        {
+            TraceSink out = Schedule.openTrace(filename, binary, -1);
+            try
+            {
+                out.writeHeader(scheduler);
+                this.headerLength = out.mark();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                out.close();
+                throw e;
+            }
+            return out;
+        }
+
+        //  Write the new header on its own to compare it with the old one
+        Path trace = Paths.get(filename);
+        Path header = Paths.get(filename + ".tmp");
+        try
+        {
+            try (TraceSink out = Schedule.openTrace(header.toString(), binary, -1))
+            {
+                out.writeHeader(scheduler);
+                this.headerLength = out.mark();
+            }
+            boolean same = this.headerLength == this.oldHeaderLength;
+            if (same)
+            {
+                try (FileChannel old = FileChannel.open(trace, StandardOpenOption.READ);
+                    FileChannel now = FileChannel.open(header, StandardOpenOption.READ))
+                {
+                    same = read(old, 0, (int) this.headerLength).equals(read(now, 0, (int) this.headerLength));
+                }
+            }
+            if (same)
+            {
+                Files.delete(header);
+            }
+            else
+            {
+                try (FileChannel old = FileChannel.open(trace, StandardOpenOption.READ);
+                    FileChannel now = FileChannel.open(header, StandardOpenOption.WRITE))
+                {
+                    now.position(this.headerLength);
+                    copy(old, this.oldHeaderLength, this.traceOffset, now);
+                }
+                Files.move(header, trace, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            Files.deleteIfExists(header);
+            throw e;
+        }
+        TraceSink out = Schedule.openTrace(filename, binary, this.headerLength + this.traceOffset);
+        try
+        {
+            out.resume(scheduler);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            out.close();
+            throw e;
+        }
+        return out;
+    }
+
+    //  Copies part of one file to the position of another channel
+    static void copy(FileChannel from, long position, long length, FileChannel to) throws IOException
+    {
+        for (long done = 0; done < length; )
+        {
+            done += from.transferTo(position + done, length - done, to);
+        }
+    }
+
+    @Override
+    public boolean resuming()
+    {
+        return this.resuming;
+    }
+
+    //  Due once there have been enough steps since the last snapshot for the unfinished rows it writes again
+    @Override
+    public boolean due()
+    {
+        return ++this.steps >= STEPS && this.steps >= (long) STEPS_PER_ROW * this.openCount;
+    }
+
+    //  Appends a snapshot to the log, holding the rows still unfinished at the last one and those arrived since
+    @Override
+    public void save(long time, Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        ProcessorLoad load, int[] running, long[] dispatched, long[] charged, long[] busy, int[] migrations,
+        TraceSink out) throws IOException
+    {
+        ProcessTable table = scheduler.table;
+        SnapshotBuffer state = this.state;
+        int rows = this.openCount + scheduler.arrived - this.lastArrived;
+        if (this.open.length < rows)
+        {
+            this.open = Arrays.copyOf(this.open, Math.max(rows, this.open.length * 2));
+            this.ids = new int[this.open.length];
+        }
+        for (int i = this.lastArrived; i < scheduler.arrived; i++)
+        {
+            this.open[this.openCount++] = i;
+        }
+
+        //  The trace only has to be complete once the run finishes, see finish
+        state.clear();
+        state.putLong(time);
+        state.putLong(out.length() - this.headerLength);
+        state.putInt(scheduler.arrived);
+        state.putInt(rows);
+        state.putInts(this.open, rows);
+        for (int i = 0; i < rows; i++)
+        {
+            this.ids[i] = scheduler.arrivals[this.open[i]];
+        }
+        state.putRows(table, this.ids, rows);
+        int unfinished = 0;
+        for (int i = 0; i < rows; i++)
+        {
+            if (table.turnaround.get(this.ids[i]) == 0)
+            {
+                this.open[unfinished++] = this.open[i];
+            }
+        }
+        this.openCount = unfinished;
+        this.lastArrived = scheduler.arrived;
+        state.putProcessors(policies, events, load, running, dispatched, charged, busy, migrations);
+        ByteBuffer buffer = state.buffer;
+        buffer.flip();
+
+        if (this.count == this.times.length)
+        {
+            this.times = Arrays.copyOf(this.times, this.count * 2);
+            this.reaches = Arrays.copyOf(this.reaches, this.count * 2);
+            this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+            this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+        }
+        this.times[this.count] = time;
+        this.reaches[this.count] = reach(time, scheduler, policies, events, running, dispatched);
+        this.offsets[this.count] = this.log.position();
+        this.lengths[this.count] = buffer.remaining();
+        this.count++;
+        while (buffer.hasRemaining())
+        {
+            this.log.write(buffer);
+        }
+        this.steps = 0;
+    }
+
+    //  Returns the time a stretch pending at a snapshot was sized by, or the time of the snapshot if there is
+    //  none. A pending event further from its dispatch than one slice belongs to a stretch, and as nothing
+    //  arrives between its dispatch and its bound, the next arrival still is that bound
+    static long reach(long time, Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        int[] running, long[] dispatched)
+    {
+        for (int cpu = 0; cpu < policies.length; cpu++)
+        {
+            if (running[cpu] >= 0 && events.isScheduled(cpu)
+                && events.time[cpu] - dispatched[cpu] > policies[cpu].slice(running[cpu]))
+            {
+                return Math.min(scheduler.nextArrival(), scheduler.runfor);
+            }
+        }
+        return time;
+    }
+
+    //  Applies the rows of every kept snapshot in order, then the processors of the last
+    @Override
+    public long restore(Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        ProcessorLoad load, int[] running, long[] dispatched, long[] charged, long[] busy, int[] migrations)
+    {
+        ProcessTable table = scheduler.table;
+        SnapshotBuffer state = this.state;
+        state.wrap(this.snapshots);
+        for (int i = 0; i < this.kept; i++)
+        {
+            this.snapshots.position((int) this.offsets[i] + 16);
+            scheduler.arrived = state.getInt();
+            int rows = state.getInt();
+            int[] ids = state.getInts(rows);
+            for (int row = 0; row < rows; row++)
+            {
+                ids[row] = scheduler.arrivals[ids[row]];
+            }
+            state.getRows(table, ids, rows);
+        }
+        state.getProcessors(policies, events, load, running, dispatched, charged, busy, migrations);
+        state.reset();
+        this.snapshots = null;
+        this.resuming = false;
+
+        //  Carry on as if the run had taken that snapshot itself
+        this.openCount = 0;
+        for (int i = 0; i < scheduler.arrived; i++)
+        {
+            if (table.turnaround.get(scheduler.arrivals[i]) == 0)
+            {
+                if (this.openCount == this.open.length)
+                {
+                    this.open = Arrays.copyOf(this.open, this.openCount * 2);
+                }
+                this.open[this.openCount++] = i;
+            }
+        }
+        this.lastArrived = scheduler.arrived;
+        this.steps = 0;
+        return this.time;
+    }
+
+    //  Writes the index behind the snapshots, which makes the log usable again
+    @Override
+    public void finish(TraceSink out) throws IOException
+    {
+        Scheduler scheduler = this.scheduler;
+        ProcessTable table = scheduler.table;
+        SnapshotBuffer state = this.state;
+        try
+        {
+            long traceLength = out.mark();
+            long position = this.log.position();
+
+            state.clear();
+            state.putBytes(scheduler.use.getBytes(StandardCharsets.UTF_8));
+            state.putInt(scheduler.quantum != null ? scheduler.quantum : -1);
+            state.putInt(scheduler.getCpus());
+            state.putBytes(scheduler.trace.getBytes(StandardCharsets.UTF_8));
+            state.putLong(scheduler.runfor);
+            state.putLong(this.headerLength);
+            state.putLong(traceLength);
+            int processes = table.size;
+            state.putInt(processes);
+            long[] column = new long[processes];
+            for (int id = 0; id < processes; id++)
+            {
+                column[id] = table.arrival.get(id);
+            }
+            state.putLongs(column, processes);
+            for (int id = 0; id < processes; id++)
+            {
+                column[id] = this.bursts.get(id);
+            }
+            state.putLongs(column, processes);
+            state.putInts(table.priority, processes);
+            int[] lengths = new int[processes];
+            int names = 0;
+            for (int id = 0; id < processes; id++)
+            {
+                lengths[id] = table.name[id].length;
+                names += lengths[id];
+            }
+            state.putInts(lengths, processes);
+            state.reserve(names);
+            for (int id = 0; id < processes; id++)
+            {
+                state.buffer.put(table.name[id]);
+            }
+            state.putInt(this.count);
+            for (int i = 0; i < this.count; i++)
+            {
+                state.putLong(this.times[i]);
+                state.putLong(this.reaches[i]);
+                state.putLong(this.offsets[i]);
+                state.putLong(this.lengths[i]);
+            }
+            state.putLong(position);
+            state.putInt(MAGIC);
+            state.putInt(VERSION);
+            ByteBuffer buffer = state.buffer;
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                this.log.write(buffer);
+            }
+        }
+        finally
+        {
+            this.log.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import java.io.IOException;
+
+
+//  Snapshots of the engine taken while a simulation runs, and the one a run starts from
+//  Checkpoint keeps the latest so a crashed run can be resumed, SnapshotLog keeps several so the next run
+//  of an edited input only re-simulates what the edit changed. Snapshots are taken between time steps,
+//  once every processor has been served, so a restored run re-enters the engine loop exactly where the
+//  run the snapshot came from was
+interface Snapshots {
+
+    //  Takes note of the input before the run changes any of it
+    void prepare(Scheduler scheduler);
+
+    //  Reads the snapshot to start from, returns an error message or null
+    String load(Scheduler scheduler) throws IOException;
+
+    //  Opens the trace of the run, continuing the one a loaded snapshot points into
+    TraceSink open(Scheduler scheduler, String filename, boolean binary) throws IOException;
+
+    //  Returns true if the run starts from a loaded snapshot rather than from time 0
+    boolean resuming();
+
+    //  Called once per engine step, returns true if a snapshot is due
+    boolean due();
+
+    //  Takes a snapshot of the engine between two time steps
+    void save(long time, Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        ProcessorLoad load, int[] running, long[] dispatched, long[] charged, long[] busy, int[] migrations,
+        TraceSink out) throws IOException;
+
+    //  Puts the engine back in the state of the loaded snapshot and returns its time
+    long restore(Scheduler scheduler, SchedulingPolicy[] policies, EventQueue events,
+        ProcessorLoad load, int[] running, long[] dispatched, long[] charged, long[] busy, int[] migrations);
+
+    //  Called once the run has finished with its trace complete
+    void finish(TraceSink out) throws IOException;
+}
@@ -0,0 +1,37 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+
+//  Destination for the simulation output: the header, each event as it happens, then the footer
+interface TraceSink extends Closeable {
+    
+    //  Writes everything known before the simulation starts
+    void writeHeader(Scheduler scheduler) throws IOException;
+    
+    //  Writes the finishing time and per-process results once the simulation ends
+    void writeFooter(Scheduler scheduler) throws IOException;
+    
+    //  Takes up the header of a trace continued from a checkpoint, without writing it again
+    void resume(Scheduler scheduler) throws IOException;
+    
+    //  Makes everything written so far durable and returns its length, for a checkpoint to point at
+    long mark() throws IOException;
+    
+    //  Returns the length of everything written so far, without making it durable
+    long length() throws IOException;
+    
+    void arrived(long time, int process) throws IOException;
+    
+    //  Processors are numbered from 0, and there is only processor 0 unless the input has a "cpus" line
+    void selected(long time, int cpu, int process, long burst) throws IOException;
+    
+    //  A process selected for a stretch of several slices that it keeps the processor for, without a
+    //  selection in between, until just before until. Only written in place of those selections by a
+    //  compact trace
+    void selected(long time, long until, int cpu, int process, long burst) throws IOException;
+    
+    void finished(long time, int cpu, int process) throws IOException;
+    
+    //  Every processor is idle from time until just before until
+    void idle(long time, long until) throws IOException;
+}
@@ -0,0 +1,261 @@
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+
+//  Streams the simulation output to file, writing each event line as it happens
+//  Each line is formatted into ByteWriter's reusable buffer, so logging an event creates no garbage
+class TraceWriter extends ByteWriter implements TraceSink {
+    
+    static final byte[] PROCESSES = bytes(" processes\n");
+    static final byte[] USING = bytes("Using ");
+    static final byte[] QUANTUM = bytes("Quantum ");
+    static final byte[] CPUS = bytes("CPUs ");
+    static final byte[] CPU = bytes("CPU ");
+    static final byte[] FINISHED_AT = bytes("Finished at time ");
+    static final byte[] WAIT = bytes(" wait ");
+    static final byte[] TURNAROUND = bytes(" turnaround ");
+    static final byte[] TIME = bytes("Time ");
+    static final byte[] SEPARATOR = bytes(": ");
+    static final byte[] ARRIVED = bytes(" arrived\n");
+    static final byte[] SELECTED = bytes(" selected (burst ");
+    static final byte[] SELECTED_END = bytes(")\n");
+    static final byte[] FINISHED = bytes(" finished\n");
+    static final byte[] IDLE = bytes("Idle\n");
+    
+    //  Table the process ids in event lines refer to
+    ProcessTable table;
+    //  Event lines name the processor only when there is more than one
+    boolean cpus;
+    //  A compact trace writes an idle gap or a stretch of one process as a single line over a range of time
+    boolean compact;
+    
+    /**
+     * Creates (or truncates) the output file
+     * @param filename
+     *      Path of the output file
+     * @throws IOException
+     *      Exception if the output file cannot be created
+     */
+    public TraceWriter(String filename) throws IOException
+    {
+        super(filename);
+        this.table = null;
+        this.cpus = false;
+        this.compact = false;
+    }
+    
+    /**
+     * Writes the trace to an open channel, such as a socket
+     * @param channel
+     *      Channel the trace is written to
+     */
+    public TraceWriter(WritableByteChannel channel)
+    {
+        super(channel);
+        this.table = null;
+        this.cpus = false;
+        this.compact = false;
+    }
+    
+    /**
+     * Opens an output file to continue it from a checkpoint
+     * @param filename
+     *      Path of the output file
+     * @param offset
+     *      Length of the output the checkpoint was taken at, anything after it is dropped
+     * @throws IOException
+     *      Exception if the output file cannot be opened
+     */
+    public TraceWriter(String filename, long offset) throws IOException
+    {
+        super(filename, offset);
+        this.table = null;
+        this.cpus = false;
+        this.compact = false;
+    }
+    
+    @Override
+    public void resume(Scheduler scheduler)
+    {
+        this.table = scheduler.table;
+        this.cpus = scheduler.getCpus() > 1;
+        this.compact = scheduler.trace.equals("compact");
+    }
+    
+    //  Writes the process count, algorithm name and quantum lines
+    @Override
+    public void writeHeader(Scheduler scheduler) throws IOException
+    {
+        this.table = scheduler.table;
+        this.cpus = scheduler.getCpus() > 1;
+        this.compact = scheduler.trace.equals("compact");
+        
+        putNumber(scheduler.processcount);
+        put(PROCESSES);
+        put(USING);
+        put(bytes(scheduler.usename));
+        put((byte) '\n');
+        if (scheduler.quantum != null)
+        {
+            put(QUANTUM);
+            putNumber(scheduler.quantum);
+            put((byte) '\n');
+        }
+        if (this.cpus)
+        {
+            put(CPUS);
+            putNumber(scheduler.getCpus());
+            put((byte) '\n');
+        }
+        put((byte) '\n');
+    }
+    
+    //  Writes the finishing time and the wait and turnaround of every process
+    @Override
+    public void writeFooter(Scheduler scheduler) throws IOException
+    {
+        finishedAt(scheduler.end);
+        ProcessTable table = scheduler.table;
+        for (int id = 0; id < table.size; id++)
+        {
+            result(table.name[id], table.wait.get(id), table.turnaround.get(id));
+        }
+        processors(scheduler);
+    }
+    
+    //  Writes the busy time, utilization and migrations of every processor when there is more than one
+    public void processors(Scheduler scheduler) throws IOException
+    {
+        if (!this.cpus || scheduler.busy == null)
+        {
+            return;
+        }
+        put((byte) '\n');
+        for (int cpu = 0; cpu < scheduler.busy.length; cpu++)
+        {
+            double utilization = scheduler.end > 0 ? 100.0 * scheduler.busy[cpu] / scheduler.end : 0;
+            put(bytes(String.format(Locale.ROOT, "CPU %d busy %d utilization %.2f%% migrations %d\n",
+                cpu, scheduler.busy[cpu], utilization, scheduler.migrations[cpu])));
+        }
+    }
+    
+    //  Writes the "Finished at time" line that opens the footer
+    public void finishedAt(long end) throws IOException
+    {
+        put(FINISHED_AT);
+        putNumber(end);
+        put((byte) '\n');
+        put((byte) '\n');
+    }
+    
+    //  Writes the footer line of one process
+    public void result(byte[] name, long wait, long turnaround) throws IOException
+    {
+        put(name);
+        put(WAIT);
+        putNumber(wait);
+        if (turnaround > 0)
+        {
+            put(TURNAROUND);
+            putNumber(turnaround);
+        }
+        put((byte) '\n');
+    }
+    
+    @Override
+    public void arrived(long time, int process) throws IOException
+    {
+        time(time);
+        put(this.table.name[process]);
+        put(ARRIVED);
+    }
+    
+    @Override
+    public void selected(long time, int cpu, int process, long burst) throws IOException
+    {
+        time(time, cpu);
+        put(this.table.name[process]);
+        put(SELECTED);
+        putNumber(burst);
+        put(SELECTED_END);
+    }
+    
+    //  Writes "Time 8-15: P2 selected (burst 9)" for a process that kept the processor through time 15
+    @Override
+    public void selected(long time, long until, int cpu, int process, long burst) throws IOException
+    {
+        range(time, until - 1, cpu);
+        put(this.table.name[process]);
+        put(SELECTED);
+        putNumber(burst);
+        put(SELECTED_END);
+    }
+    
+    @Override
+    public void finished(long time, int cpu, int process) throws IOException
+    {
+        time(time, cpu);
+        put(this.table.name[process]);
+        put(FINISHED);
+    }
+    
+    @Override
+    public void idle(long time, long until) throws IOException
+    {
+        //  One line per idle time unit, or "Time 100-5000: Idle" for the whole gap in a compact trace
+        if (this.compact && until - time > 1)
+        {
+            range(time, until - 1);
+            put(IDLE);
+            return;
+        }
+        for (long t = time; t < until; t++)
+        {
+            time(t);
+            put(IDLE);
+        }
+    }
+    
+    //  Writes the "Time N: " prefix shared by every event line
+    void time(long time) throws IOException
+    {
+        put(TIME);
+        putNumber(time);
+        put(SEPARATOR);
+    }
+    
+    //  Writes the "Time N: " prefix followed by "CPU K: " when there is more than one processor
+    void time(long time, int cpu) throws IOException
+    {
+        time(time);
+        if (this.cpus)
+        {
+            put(CPU);
+            putNumber(cpu);
+            put(SEPARATOR);
+        }
+    }
+    
+    //  Writes the "Time N-M: " prefix of a line covering a range of time
+    void range(long time, long last) throws IOException
+    {
+        put(TIME);
+        putNumber(time);
+        put((byte) '-');
+        putNumber(last);
+        put(SEPARATOR);
+    }
+    
+    //  Writes the "Time N-M: " prefix followed by "CPU K: " when there is more than one processor
+    void range(long time, long last, int cpu) throws IOException
+    {
+        range(time, last);
+        if (this.cpus)
+        {
+            put(CPU);
+            putNumber(cpu);
+            put(SEPARATOR);
+        }
+    }
+}
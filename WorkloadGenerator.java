@@ -0,0 +1,353 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+
+/*
+ *  Synthetic workload generator
+ *
+ *  To run:
+ *  [1] Enter "javac WorkloadGenerator.java"
+ *  [2] Enter "java WorkloadGenerator [--count N] [--runfor T] [--seed S]
+ *             [--arrivals poisson|bursty|uniform] [--bursts exponential|heavy] [--burst MEAN]
+ *             [--use ALGORITHM] [--quantum Q] [--cpus N] [--output FILE] [--simulate] [--runs N]"
+ *
+ *  Writes a valid input file (processes.in by default) whose arrivals are spread over the run.
+ *  With "--simulate" the processes go straight into a Scheduler and the simulation runs at once,
+ *  writing processes.out, without an input file in between.
+ *  With "--runs N" N workloads are generated from the seeds S, S + 1 and on, each one is simulated,
+ *  and the mean results are printed with their confidence intervals (see MonteCarlo).
+ *
+ */
+
+public class WorkloadGenerator {
+
+    //  Processes per arrival burst for bursty arrivals, on average
+    static final double BURST_SIZE = 16;
+    //  Shape of the Pareto distribution for heavy-tailed bursts, finite mean but infinite variance
+    static final double PARETO_SHAPE = 1.5;
+
+    int count = 1000;
+    long runfor = 0;
+    long seed = 1;
+    String arrivals = "poisson";
+    String bursts = "exponential";
+    double burst = 8;
+    String use = "fcfs";
+    Integer quantum = null;
+    Integer cpus = null;
+
+    SplittableRandom random;
+    double clock;
+    int remaining;
+
+    //  Arrival time and burst of the process generated last
+    long arrival;
+    long length;
+
+    public static void main(String[] args)
+    {
+        WorkloadGenerator generator = new WorkloadGenerator();
+        String output = Schedule.inputFilename;
+        boolean simulate = false;
+        int runs = 0;
+
+        //  Read command line options
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                String arg = args[i];
+                if (arg.equals("--simulate"))
+                {
+                    simulate = true;
+                    continue;
+                }
+                if (i + 1 == args.length)
+                {
+                    System.out.println("Error: Missing value for " + arg);
+                    return;
+                }
+                String value = args[++i];
+                switch (arg)
+                {
+                    case "--count":
+                        generator.count = Integer.parseInt(value);
+                        break;
+                    case "--runfor":
+                        generator.runfor = Long.parseLong(value);
+                        break;
+                    case "--seed":
+                        generator.seed = Long.parseLong(value);
+                        break;
+                    case "--arrivals":
+                        generator.arrivals = value;
+                        break;
+                    case "--bursts":
+                        generator.bursts = value;
+                        break;
+                    case "--burst":
+                        generator.burst = Double.parseDouble(value);
+                        break;
+                    case "--use":
+                        generator.use = value;
+                        break;
+                    case "--quantum":
+                        generator.quantum = Integer.valueOf(value);
+                        break;
+                    case "--cpus":
+                        generator.cpus = Integer.valueOf(value);
+                        break;
+                    case "--output":
+                        output = value;
+                        break;
+                    case "--runs":
+                        runs = Integer.parseInt(value);
+                        break;
+                    default:
+                        System.out.println("Error: Unknown option " + arg);
+                        return;
+                }
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        String error = generator.validate();
+        if (error != null)
+        {
+            System.out.println(error);
+            return;
+        }
+
+        if (runs > 0)
+        {
+            MonteCarlo.run(generator, runs);
+            return;
+        }
+
+        if (simulate)
+        {
+            Scheduler scheduler = Schedule.validateInput(generator.generate(new Scheduler()));
+            if (scheduler.useref.containsKey(scheduler.use))
+            {
+                Schedule.run(scheduler);
+            }
+            return;
+        }
+
+        try
+        {
+            generator.write(output);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Unable to create " + output);
+            System.out.println(e);
+        }
+    }
+
+    //  Returns an error message for inconsistent settings, or null
+    public String validate()
+    {
+        if (this.count < 0)
+        {
+            return "Error: Invalid process count " + this.count;
+        }
+        if (!this.arrivals.equals("poisson") && !this.arrivals.equals("bursty") && !this.arrivals.equals("uniform"))
+        {
+            return "Error: Invalid arrival distribution " + this.arrivals;
+        }
+        if (!this.bursts.equals("exponential") && !this.bursts.equals("heavy"))
+        {
+            return "Error: Invalid burst distribution " + this.bursts;
+        }
+        if (!(this.burst >= 1))
+        {
+            return "Error: Invalid mean burst " + this.burst;
+        }
+        return null;
+    }
+
+    //  Returns a generator with the same settings and a sequence of its own
+    public WorkloadGenerator copy()
+    {
+        WorkloadGenerator copy = new WorkloadGenerator();
+        copy.count = this.count;
+        copy.runfor = this.runfor;
+        copy.seed = this.seed;
+        copy.arrivals = this.arrivals;
+        copy.bursts = this.bursts;
+        copy.burst = this.burst;
+        copy.use = this.use;
+        copy.quantum = this.quantum;
+        copy.cpus = this.cpus;
+        return copy;
+    }
+
+    //  Length of the run, by default long enough to serve every process at the mean burst
+    public long runfor()
+    {
+        return this.runfor > 0 ? this.runfor : Math.min((long) (this.count * this.burst), Long.MAX_VALUE - 1) + 1;
+    }
+
+    //  Restarts the sequence of processes from the seed
+    public void reset()
+    {
+        this.random = new SplittableRandom(this.seed);
+        this.clock = 0;
+        this.remaining = 0;
+    }
+
+    /**
+     * Generates the next process, arrivals never decrease so the output suits --stream
+     * Arrivals are spread over the whole run, a mean gap of runfor / count between processes
+     */
+    public void next()
+    {
+        double gap = (double) runfor() / Math.max(this.count, 1);
+        switch (this.arrivals)
+        {
+            case "uniform":
+                this.clock += this.random.nextDouble() * 2 * gap;
+                break;
+            case "bursty":
+                //  Groups of processes arriving close together, separated by long quiet periods
+                if (this.remaining == 0)
+                {
+                    this.remaining = 1 + (int) exponential(BURST_SIZE - 1);
+                    this.clock += exponential(gap * BURST_SIZE * 0.9);
+                }
+                else
+                {
+                    this.clock += exponential(gap * 0.1);
+                }
+                this.remaining--;
+                break;
+            default:
+                this.clock += exponential(gap);
+                break;
+        }
+        this.arrival = (long) this.clock;
+
+        double length;
+        if (this.bursts.equals("heavy"))
+        {
+            //  Pareto scaled so its mean is the requested mean burst
+            double scale = this.burst * (PARETO_SHAPE - 1) / PARETO_SHAPE;
+            length = scale / Math.pow(1 - this.random.nextDouble(), 1 / PARETO_SHAPE);
+        }
+        else
+        {
+            length = exponential(this.burst);
+        }
+        this.length = Math.max(1, Math.round(length));
+    }
+
+    double exponential(double mean)
+    {
+        return -mean * Math.log(1 - this.random.nextDouble());
+    }
+
+    /**
+     * Adds the generated processes to a Scheduler, in place of parsing an input file
+     * @param scheduler
+     *      Empty Scheduler
+     * @return
+     *      The same Scheduler with its parameters set and the processes in its table
+     */
+    public Scheduler generate(Scheduler scheduler)
+    {
+        scheduler.processcount = this.count;
+        scheduler.runfor = runfor();
+        scheduler.use = this.use;
+        scheduler.usename = scheduler.useref.get(this.use);
+        scheduler.quantum = this.quantum;
+        scheduler.cpus = this.cpus;
+
+        reset();
+        byte[] prefix = ByteWriter.bytes("P");
+        for (int i = 0; i < this.count; i++)
+        {
+            next();
+            scheduler.addProcess(name(prefix, i + 1), this.arrival, this.length, 0);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Writes the generated processes as an input file
+     * @param filename
+     *      Path of the input file
+     * @throws IOException
+     *      Exception if the file cannot be written
+     */
+    public void write(String filename) throws IOException
+    {
+        byte[] processcount = ByteWriter.bytes("processcount ");
+        byte[] runfor = ByteWriter.bytes("runfor ");
+        byte[] use = ByteWriter.bytes("use " + this.use + "\n");
+        byte[] quantum = ByteWriter.bytes("quantum ");
+        byte[] cpus = ByteWriter.bytes("cpus ");
+        byte[] name = ByteWriter.bytes("process name P");
+        byte[] arrival = ByteWriter.bytes(" arrival ");
+        byte[] burst = ByteWriter.bytes(" burst ");
+        byte[] end = ByteWriter.bytes("end\n");
+
+        reset();
+        try (ByteWriter out = new ByteWriter(filename))
+        {
+            out.put(processcount);
+            out.putNumber(this.count);
+            out.put((byte) '\n');
+            out.put(runfor);
+            out.putNumber(runfor());
+            out.put((byte) '\n');
+            out.put(use);
+            if (this.quantum != null)
+            {
+                out.put(quantum);
+                out.putNumber(this.quantum);
+                out.put((byte) '\n');
+            }
+            if (this.cpus != null)
+            {
+                out.put(cpus);
+                out.putNumber(this.cpus);
+                out.put((byte) '\n');
+            }
+            for (int i = 0; i < this.count; i++)
+            {
+                next();
+                out.put(name);
+                out.putNumber(i + 1);
+                out.put(arrival);
+                out.putNumber(this.arrival);
+                out.put(burst);
+                out.putNumber(this.length);
+                out.put((byte) '\n');
+            }
+            out.put(end);
+        }
+    }
+
+    //  Builds the name "P<number>" without going through a String
+    static byte[] name(byte[] prefix, int number)
+    {
+        int digits = 1;
+        for (int rest = number / 10; rest != 0; rest /= 10)
+        {
+            digits++;
+        }
+        byte[] name = new byte[prefix.length + digits];
+        System.arraycopy(prefix, 0, name, 0, prefix.length);
+        for (int i = name.length - 1; i >= prefix.length; i--)
+        {
+            name[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        return name;
+    }
+}
@@ -0,0 +1,70 @@
+package cpuscheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/*
+ *  The workloads of the Benchmark harness under JMH
+ *
+ *  To run:
+ *  [1] Enter "gradle jmh"
+ *
+ *  JMH needs benchmarks in a named package, and a named package cannot refer to the simulator's classes
+ *  in the unnamed one, so each workload is built by Benchmark.task, looked up once per trial. The timed
+ *  call then runs exactly what a fork of the Benchmark harness times.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SimulatorBenchmark {
+
+    @Param({ "parse/readInput+parseInput", "parse/InputParser",
+        "engine/fcfs", "engine/rr", "engine/sjf", "engine/nsjf", "engine/priority", "engine/mlfq",
+        "engine-wide/fcfs", "engine-wide/rr", "engine-wide/sjf", "engine-wide/nsjf", "engine-wide/priority",
+        "engine-wide/mlfq",
+        "write/text", "write/binary", "write-wide/binary" })
+    public String benchmark;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int processes;
+
+    //  Length of the run, empty for four time units per process
+    @Param({ "" })
+    public String runfor;
+
+    Callable<Object> task;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws ReflectiveOperationException
+    {
+        Method task = Class.forName("Benchmark").getMethod("task", String.class, Long.class);
+        this.task = (Callable<Object>) task.invoke(null, this.benchmark + "/" + this.processes,
+            this.runfor.isEmpty() ? null : Long.valueOf(this.runfor));
+    }
+
+    @Benchmark
+    public Object run() throws Exception
+    {
+        return this.task.call();
+    }
+}
@@ -0,0 +1,408 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+
+/*
+ *  Regression check for the arrival index
+ *
+ *  To run:
+ *  [1] Enter "javac -sourcepath . test/ArrivalIndexCheck.java"
+ *  [2] Enter "java -cp .:test ArrivalIndexCheck [workloads] [seed]"
+ *
+ *  Generates seeded random workloads for fcfs, rr and sjf, in shuffled input order with arrival ties,
+ *  negative arrivals and bursts of 0. Each one is simulated by the engine, parsed by InputParser with
+ *  arrivals handed out from the sorted index, and by a copy of the simulator as it was before the index,
+ *  which steps through every time unit and looks through every process for the ones arriving then.
+ *  Half of the engine runs sort the index through its 64-bit path. Any byte difference between the
+ *  processes.out the engine writes and the output of the copy fails the check.
+ *
+ */
+
+public class ArrivalIndexCheck {
+
+    static final String[] POLICIES = { "fcfs", "rr", "sjf" };
+    static final String[] ARRIVALS = { "poisson", "bursty", "uniform" };
+
+    //  Process as the simulator before the index kept it
+    static class Row {
+
+        String name;
+        int arrival;
+        int burst;
+        int wait;
+        int start;
+        int turnaround;
+
+        Row(String name, int arrival, int burst)
+        {
+            this.name = name;
+            this.arrival = arrival;
+            this.burst = burst;
+        }
+    }
+
+    //  Workload as written to the input file, its processes in input order
+    static class Workload {
+
+        String use;
+        int runfor;
+        Integer quantum;
+        List<Row> rows = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int workloads = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        File input = File.createTempFile("processes", ".in");
+        File output = File.createTempFile("processes", ".out");
+        Schedule.inputFilename = input.getPath();
+        Schedule.outputFilename = output.getPath();
+
+        int failed = 0;
+        for (int i = 0; i < workloads; i++)
+        {
+            for (String use : POLICIES)
+            {
+                Workload workload = generate(use, seed + i);
+                write(input, workload);
+                byte[] reference = reference(workload).getBytes(StandardCharsets.UTF_8);
+
+                output.delete();
+                Scheduler scheduler = InputParser.parse(input.getPath());
+                if ((seed + i) % 2 != 0)
+                {
+                    scheduler.table.arrival.widen();
+                }
+                Schedule.run(scheduler);
+
+                if (!output.exists() || !Arrays.equals(reference, Files.readAllBytes(output.toPath())))
+                {
+                    System.out.println("Mismatch: " + use + " seed " + (seed + i));
+                    failed++;
+                }
+            }
+        }
+        input.delete();
+        output.delete();
+
+        System.out.println((workloads * POLICIES.length - failed) + " of " + workloads * POLICIES.length
+            + " workloads match");
+        if (failed > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    //  Generates a workload in shuffled order, some of its arrivals negative and some bursts 0
+    static Workload generate(String use, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        WorkloadGenerator generator = new WorkloadGenerator();
+        generator.count = 1 + random.nextInt(400);
+        generator.seed = seed;
+        generator.arrivals = ARRIVALS[random.nextInt(ARRIVALS.length)];
+        generator.burst = 1 + random.nextInt(8);
+        //  A run shorter than the work crowds the arrivals together, many of them at the same time
+        generator.runfor = 1 + random.nextInt(generator.count * 4);
+
+        int count = generator.count;
+        Row[] rows = new Row[count];
+        generator.reset();
+        for (int i = 0; i < count; i++)
+        {
+            generator.next();
+            int arrival = random.nextInt(10) == 0 ? -1 - random.nextInt(5) : (int) generator.arrival;
+            int burst = random.nextInt(20) == 0 ? 0 : (int) generator.length;
+            rows[i] = new Row("P" + (i + 1), arrival, burst);
+        }
+
+        Workload workload = new Workload();
+        workload.use = use;
+        workload.runfor = (int) generator.runfor();
+        if (use.equals("rr"))
+        {
+            workload.quantum = 1 + random.nextInt(4);
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        for (int i : order)
+        {
+            workload.rows.add(rows[i]);
+        }
+        return workload;
+    }
+
+    static void write(File file, Workload workload) throws IOException
+    {
+        try (Writer writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("processcount " + workload.rows.size() + "\n");
+            writer.write("runfor " + workload.runfor + "\n");
+            writer.write("use " + workload.use + "\n");
+            if (workload.quantum != null)
+            {
+                writer.write("quantum " + workload.quantum + "\n");
+            }
+            for (Row row : workload.rows)
+            {
+                writer.write("process name " + row.name + " arrival " + row.arrival + " burst " + row.burst + "\n");
+            }
+            writer.write("end\n");
+        }
+    }
+
+    //  Returns the output the simulator wrote before the index, from its fcfs, rr and sjf loops
+    static String reference(Workload workload)
+    {
+        StringBuilder out = new StringBuilder();
+        int end;
+        String usename;
+        switch (workload.use)
+        {
+            case "fcfs":
+                end = fcfs(workload, out);
+                usename = "First-Come First-Served";
+                break;
+            case "rr":
+                end = rr(workload, out);
+                usename = "Round Robin";
+                break;
+            default:
+                end = sjf(workload, out);
+                usename = "Preemptive Shortest Job First";
+                break;
+        }
+
+        StringBuilder output = new StringBuilder();
+        output.append(workload.rows.size()).append(" processes\n");
+        output.append("Using ").append(usename).append("\n");
+        if (workload.quantum != null)
+        {
+            output.append("Quantum ").append(workload.quantum).append("\n");
+        }
+        output.append("\n");
+        output.append(out);
+        output.append("Finished at time ").append(end).append("\n\n");
+        for (Row p : workload.rows)
+        {
+            output.append(p.name).append(" wait ").append(p.wait);
+            if (p.turnaround > 0)
+            {
+                output.append(" turnaround ").append(p.turnaround);
+            }
+            output.append("\n");
+        }
+        return output.toString();
+    }
+
+    static int fcfs(Workload workload, StringBuilder out)
+    {
+        int time = 0;
+        List<Row> queue = new ArrayList<>();
+        boolean running = false;
+
+        while (time < workload.runfor)
+        {
+            //  Check for new arrivals at current time
+            for (Row process : workload.rows)
+            {
+                if (process.arrival == time)
+                {
+                    process.start = time;
+                    queue.add(0, process);
+                    out.append("Time ").append(time).append(": ").append(process.name).append(" arrived\n");
+                }
+            }
+            if (!running)
+            {
+                if (queue.size() > 0)
+                {
+                    Row process = queue.get(queue.size() - 1);
+                    running = true;
+                    out.append("Time ").append(time).append(": ").append(process.name)
+                        .append(" selected (burst ").append(process.burst).append(")\n");
+                }
+                else
+                {
+                    out.append("Time ").append(time).append(": Idle\n");
+                }
+            }
+            time++;
+            if (running)
+            {
+                Row process = queue.get(queue.size() - 1);
+                process.burst--;
+                if (process.burst <= 0)
+                {
+                    process.turnaround = time - process.start;
+                    queue.remove(queue.size() - 1);
+                    running = false;
+                    out.append("Time ").append(time).append(": ").append(process.name).append(" finished\n");
+                }
+                for (Row p : queue)
+                {
+                    if (p != process)
+                    {
+                        p.wait++;
+                    }
+                }
+            }
+        }
+        return time;
+    }
+
+    static int rr(Workload workload, StringBuilder out)
+    {
+        int time = 0;
+        List<Row> queue = new ArrayList<>();
+        boolean running = false;
+        int quantum = workload.quantum;
+        int q = quantum;
+
+        while (time < workload.runfor)
+        {
+            //  Check for new arrivals at current time
+            for (Row process : workload.rows)
+            {
+                if (process.arrival == time)
+                {
+                    process.start = time;
+                    queue.add(process);
+                    out.append("Time ").append(time).append(": ").append(process.name).append(" arrived\n");
+                }
+            }
+            if (!running)
+            {
+                if (queue.size() > 0)
+                {
+                    Row process = queue.get(0);
+                    running = true;
+                    q = quantum;
+                    out.append("Time ").append(time).append(": ").append(process.name)
+                        .append(" selected (burst ").append(process.burst).append(")\n");
+                }
+                else
+                {
+                    out.append("Time ").append(time).append(": Idle\n");
+                }
+            }
+            time++;
+            q--;
+            if (running)
+            {
+                Row process = queue.get(0);
+                process.burst--;
+                if (process.burst <= 0)
+                {
+                    process.turnaround = time - process.start;
+                    queue.remove(0);
+                    running = false;
+                    out.append("Time ").append(time).append(": ").append(process.name).append(" finished\n");
+                }
+                else if (q <= 0)
+                {
+                    queue.add(queue.remove(0));
+                    running = false;
+                }
+                for (Row p : queue)
+                {
+                    if (p != process)
+                    {
+                        p.wait++;
+                    }
+                }
+            }
+        }
+        return time;
+    }
+
+    static int sjf(Workload workload, StringBuilder out)
+    {
+        int time = 0;
+        List<Row> queue = new ArrayList<>();
+        Row running = null;
+        Row sj = null;
+
+        while (time < workload.runfor)
+        {
+            //  Check for new arrivals at current time
+            for (Row process : workload.rows)
+            {
+                if (process.arrival == time)
+                {
+                    process.start = time;
+                    queue.add(process);
+                    Collections.sort(queue, (p1, p2) -> Integer.compare(p1.burst, p2.burst));
+                    sj = queue.get(0);
+                    out.append("Time ").append(time).append(": ").append(process.name).append(" arrived\n");
+                }
+            }
+            if (running == null)
+            {
+                if (queue.size() > 0)
+                {
+                    running = queue.get(0);
+                    out.append("Time ").append(time).append(": ").append(running.name)
+                        .append(" selected (burst ").append(running.burst).append(")\n");
+                }
+                else
+                {
+                    out.append("Time ").append(time).append(": Idle\n");
+                }
+            }
+            //  Preempt the running process for a shorter arrival
+            else if (running != sj)
+            {
+                running = sj;
+                out.append("Time ").append(time).append(": ").append(running.name)
+                    .append(" selected (burst ").append(running.burst).append(")\n");
+            }
+            time++;
+            if (running != null)
+            {
+                running.burst--;
+                if (running.burst <= 0)
+                {
+                    running.turnaround = time - running.start;
+                    queue.remove(0);
+                    if (queue.size() > 0)
+                    {
+                        Collections.sort(queue, (p1, p2) -> Integer.compare(p1.burst, p2.burst));
+                        sj = queue.get(0);
+                    }
+                    else
+                    {
+                        sj = null;
+                    }
+                    out.append("Time ").append(time).append(": ").append(running.name).append(" finished\n");
+                    running = null;
+                }
+                for (Row p : queue)
+                {
+                    if (p != running)
+                    {
+                        p.wait++;
+                    }
+                }
+            }
+        }
+        return time;
+    }
+}
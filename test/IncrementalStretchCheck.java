@@ -0,0 +1,131 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+
+/*
+ *  Regression check for incremental runs of a compact trace
+ *
+ *  To run:
+ *  [1] Enter "javac -sourcepath . test/IncrementalStretchCheck.java"
+ *  [2] Enter "java -cp .:test IncrementalStretchCheck [processes]"
+ *
+ *  Simulates a sparse Round Robin workload with quantum 1 in a compact trace, where every process runs
+ *  alone through one stretch of slices, with --incremental so a snapshot log is kept. It then adds an
+ *  arrival in the middle of the stretch pending at the last snapshot taken at a dispatch, and in the
+ *  middle of the one pending at the first, runs --incremental again after each edit, and compares
+ *  processes.out with the one a run from the start writes. Any byte difference fails the check.
+ *
+ */
+
+public class IncrementalStretchCheck {
+
+    //  Time between arrivals, and the burst of every process, shorter so the processor goes idle in between
+    static final long GAP = 40;
+    static final long BURST = 37;
+
+    public static void main(String[] args) throws IOException
+    {
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 150_000;
+
+        File directory = Files.createTempDirectory("stretch").toFile();
+        File input = new File(directory, "processes.in");
+        File incremental = new File(directory, "incremental.out");
+        File full = new File(directory, "full.out");
+        File log = new File(directory, "processes.snap");
+        Schedule.inputFilename = input.getPath();
+        Schedule.snapshotFilename = log.getPath();
+
+        long[] arrival = new long[processes];
+        for (int i = 0; i < processes; i++)
+        {
+            arrival[i] = 1 + i * GAP;
+        }
+        writeWorkload(input, arrival, -1);
+        Schedule.outputFilename = incremental.getPath();
+        Schedule.main(new String[] { "--incremental" });
+
+        //  Snapshots taken where a process was just dispatched, and so has its whole stretch ahead
+        long[] times = snapshots(log);
+        long[] stretches = new long[times.length];
+        int count = 0;
+        for (long time : times)
+        {
+            if ((time - 1) % GAP == 0)
+            {
+                stretches[count++] = time;
+            }
+        }
+        if (count == 0)
+        {
+            System.out.println("No snapshot was taken inside a stretch, " + times.length + " snapshots in all");
+            System.exit(1);
+        }
+
+        int failed = 0;
+        long[] edits = { stretches[count - 1] + BURST / 2, stretches[0] + BURST / 2 };
+        for (long edit : edits)
+        {
+            writeWorkload(input, arrival, edit);
+            Schedule.outputFilename = incremental.getPath();
+            Schedule.main(new String[] { "--incremental" });
+
+            Schedule.outputFilename = full.getPath();
+            full.delete();
+            Schedule.main(new String[0]);
+
+            if (!Arrays.equals(Files.readAllBytes(incremental.toPath()), Files.readAllBytes(full.toPath())))
+            {
+                System.out.println("Mismatch: arrival added at " + edit);
+                failed++;
+            }
+        }
+        for (File file : directory.listFiles())
+        {
+            file.delete();
+        }
+        directory.delete();
+
+        System.out.println((edits.length - failed) + " of " + edits.length + " edits match");
+        if (failed > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    //  Returns the times of the snapshots the log of an unchanged input keeps
+    static long[] snapshots(File file) throws IOException
+    {
+        Scheduler scheduler = InputParser.parse(Schedule.inputFilename);
+        SnapshotLog log = new SnapshotLog(file.getPath());
+        log.prepare(scheduler);
+        log.load(scheduler);
+        return Arrays.copyOf(log.times, log.kept);
+    }
+
+    //  Writes the workload, with one more process arriving at the given time unless it is negative
+    static void writeWorkload(File file, long[] arrival, long extra) throws IOException
+    {
+        try (Writer writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("processcount " + (arrival.length + (extra >= 0 ? 1 : 0)) + "\n");
+            writer.write("runfor " + (arrival[arrival.length - 1] + 2 * GAP) + "\n");
+            writer.write("use rr\n");
+            writer.write("quantum 1\n");
+            writer.write("trace compact\n");
+            for (int i = 0; i < arrival.length; i++)
+            {
+                writer.write("process name P" + (i + 1) + " arrival " + arrival[i] + " burst " + BURST + "\n");
+            }
+            if (extra >= 0)
+            {
+                writer.write("process name PX arrival " + extra + " burst 5\n");
+            }
+            writer.write("end\n");
+        }
+    }
+}
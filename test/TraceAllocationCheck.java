@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+
+/*
+ *  Allocation check for the text trace writer
+ *
+ *  To run:
+ *  [1] Enter "javac -sourcepath . test/TraceAllocationCheck.java"
+ *  [2] Enter "java -cp .:test TraceAllocationCheck [events]"
+ *
+ *  Writes arrived, selected, finished and idle lines through TraceWriter into a channel that drops
+ *  them, for one processor and for several, in a full and a compact trace, and with times below and
+ *  past 32 bits. Each case is warmed up, then the bytes the thread allocates over about a million
+ *  events are measured. Anything but 0 bytes per event fails the check.
+ *
+ */
+
+public class TraceAllocationCheck {
+
+    static final int WARMUP_ROUNDS = 5;
+    static final int PROCESSES = 64;
+
+    //  Channel that takes every byte without keeping any
+    static class Discard implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer buffer)
+        {
+            int length = buffer.remaining();
+            buffer.position(buffer.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        int failed = 0;
+        for (int cpus : new int[] { 1, 4 })
+        {
+            for (String trace : new String[] { "text", "compact" })
+            {
+                for (long start : new long[] { 0, 1L << 33 })
+                {
+                    if (!check(cpus, trace, start, events))
+                    {
+                        failed++;
+                    }
+                }
+            }
+        }
+        if (failed > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    //  Measures one case and prints its allocation, returns true if the writer allocated nothing
+    static boolean check(int cpus, String trace, long start, int events) throws IOException
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        TraceWriter out = new TraceWriter(new Discard());
+        out.writeHeader(scheduler(cpus, trace));
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+        {
+            write(out, start, events);
+        }
+
+        //  What reading the counter costs on its own, taken off the measurement
+        long overhead = threads.getThreadAllocatedBytes(thread);
+        overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        int written = write(out, start, events);
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated - overhead;
+        out.close();
+
+        System.out.printf(Locale.ROOT, "%-8s %d cpu %-16s %9d events %10d bytes %8.3f bytes/event%n", trace, cpus,
+            start == 0 ? "32-bit times" : "64-bit times", written, allocated, allocated / (double) written);
+        return allocated == 0;
+    }
+
+    //  Writes about a number of events, in rounds of an arrival, a selection, a finish and an idle time unit
+    static int write(TraceWriter out, long start, int events) throws IOException
+    {
+        long time = start;
+        int written = 0;
+        for (int i = 0; written < events; i++)
+        {
+            int process = i % PROCESSES;
+            int cpu = i & 3;
+            out.arrived(time, process);
+            out.selected(time, cpu, process, 1 + (i & 1023));
+            out.selected(time, time + 2, cpu, process, 1 + (i & 1023));
+            out.finished(time + 1, cpu, process);
+            out.idle(time + 1, time + 2);
+            out.idle(time + 2, time + 5);
+            time += 5;
+            written += 6;
+        }
+        return written;
+    }
+
+    //  Scheduler the trace header and event lines are written from
+    static Scheduler scheduler(int cpus, String trace)
+    {
+        Scheduler scheduler = new Scheduler();
+        scheduler.processcount = PROCESSES;
+        scheduler.runfor = 1L;
+        scheduler.use = "rr";
+        scheduler.usename = scheduler.useref.get(scheduler.use);
+        scheduler.quantum = 2;
+        scheduler.cpus = cpus;
+        scheduler.trace = trace;
+        for (int i = 0; i < PROCESSES; i++)
+        {
+            scheduler.addProcess("P" + i, 0, 1);
+        }
+        return scheduler;
+    }
+}